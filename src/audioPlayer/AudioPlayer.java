@@ -4,12 +4,12 @@ import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.Clip;
-import javax.sound.sampled.LineUnavailableException;
 import javax.sound.sampled.UnsupportedAudioFileException;
 
 // Static class to control the game sounds
@@ -40,9 +40,18 @@ public class AudioPlayer {
   public static final int MSX_BOSS = 203;
   public static final int MSX_END = 204;
 
-  // A indexed list of the sounds and music in the game, along with the files
-  private static HashMap<Integer, Clip> soundClips = new HashMap<Integer, Clip>();
+  // A indexed list of the sounds and music in the game, along with the files.
+  // Sounds are kept decoded to 16 bit mono at the rate of the mixer, and the
+  // rate of the file to place loop points with. Played from the game and the
+  // key listener thread.
+  private static ConcurrentHashMap<Integer, short[]> sounds = new ConcurrentHashMap<Integer, short[]>();
+  private static ConcurrentHashMap<Integer, Float> sampleRates = new ConcurrentHashMap<Integer, Float>();
   private static HashMap<Integer, String> fileNames = new HashMap<Integer, String>();
+  // Music isn't decoded to memory, but streamed from the file as it plays
+  private static HashSet<Integer> streamed = new HashSet<Integer>();
+
+  // Everything is played through one line, by the mixer
+  private static SoundMixer mixer;
 
   private static String SOUND_PATH = "/assets/sound/";
 
@@ -72,12 +81,27 @@ public class AudioPlayer {
     fileNames.put(MSX_BOSS, SOUND_PATH + "msx/boss_mono_8bit.wav");
     fileNames.put(MSX_END,
         SOUND_PATH + "msx/Esau - Puzzle Master_mono_8bit.wav");
+
+    streamed.add(MSX_MAIN_MENU);
+    streamed.add(MSX_OVERWORLD);
+    streamed.add(MSX_UNDERWORLD);
+    streamed.add(MSX_BOSS);
+    streamed.add(MSX_END);
+
+    if (mixer == null) {
+      mixer = new SoundMixer();
+      mixer.start();
+    }
   }
 
   // When called, loads the specified sound/music from file
   public static void load(Integer n) {
-    if (soundClips.get(n) == null) {
-      Clip soundClip;
+    // Streamed music is read when it's played, and nothing is loaded before
+    // init (running headless)
+    if (streamed.contains(n) || fileNames.get(n) == null) {
+      return;
+    }
+    if (sounds.get(n) == null) {
       try {
         InputStream audioSource = AudioPlayer.class
             .getResourceAsStream(fileNames.get(n));
@@ -95,13 +119,12 @@ public class AudioPlayer {
             format.getChannels() * 2, format.getSampleRate(), false);
         AudioInputStream audioInDecoded = AudioSystem
             .getAudioInputStream(decode, audioInRaw);
-        try {
-          soundClip = AudioSystem.getClip();
-          soundClip.open(audioInDecoded);
-          soundClips.put(n, soundClip);
-        } catch (LineUnavailableException e) {
-          e.printStackTrace();
-        }
+        byte[] pcm = audioInDecoded.readAllBytes();
+        audioInDecoded.close();
+
+        sounds.put(n, toMixer(pcm, format.getChannels(),
+            format.getSampleRate()));
+        sampleRates.put(n, format.getSampleRate());
       } catch (UnsupportedAudioFileException e) {
         e.printStackTrace();
       } catch (IOException e) {
@@ -110,41 +133,101 @@ public class AudioPlayer {
     }
   }
 
-  // When called, unloads the sounds and music from memory
+  // Little endian 16 bit samples to mono samples at the rate of the mixer
+  private static short[] toMixer(byte[] pcm, int channels, float sampleRate) {
+    int frames = pcm.length / (channels * 2);
+    short[] mono = new short[frames];
+    for (int i = 0; i < frames; ++i) {
+      int sum = 0;
+      for (int c = 0; c < channels; ++c) {
+        int b = (i * channels + c) * 2;
+        sum += (short) ((pcm[b] & 0xff) | (pcm[b + 1] << 8));
+      }
+      mono[i] = (short) (sum / channels);
+    }
+    if (sampleRate == SoundMixer.SAMPLE_RATE) {
+      return mono;
+    }
+
+    // Resample, in straight lines between the samples
+    double step = sampleRate / SoundMixer.SAMPLE_RATE;
+    short[] resampled = new short[(int) (frames / step)];
+    for (int i = 0; i < resampled.length; ++i) {
+      double p = i * step;
+      int j = (int) p;
+      int k = Math.min(j + 1, frames - 1);
+      resampled[i] = (short) (mono[j] + (mono[k] - mono[j]) * (p - j));
+    }
+    return resampled;
+  }
+
+  // When called, unloads the sounds and music from memory. Streamed music
+  // isn't in memory, and is left to be stopped by whoever started it.
   public static void unload(Integer sound) {
+    if (streamed.contains(sound)) {
+      return;
+    }
     stop(sound);
-    soundClips.get(sound).close();
+    sounds.remove(sound);
+    sampleRates.remove(sound);
   }
 
-  // When called plays the music/sounds
+  // When called plays the music/sounds. The same sound may play several
+  // times over at once.
   public static void play(Integer sound) {
-    if (soundClips.get(sound) != null) {
-      if (soundClips.get(sound).isRunning()) {
-        stop(sound);
-      }
-      while (!soundClips.get(sound).isRunning()) {
-        soundClips.get(sound).setFramePosition(0);
-        soundClips.get(sound).start();
+    play(sound, 1.0f);
+  }
+
+  // Plays the sound at a gain, 1.0 is as loud as the file
+  public static void play(Integer sound, float gain) {
+    if (streamed.contains(sound)) {
+      if (mixer != null) {
+        mixer.stream(sound, fileNames.get(sound), false, 0, gain);
       }
+      return;
+    }
+    short[] samples = sounds.get(sound);
+    if (samples == null && fileNames.get(sound) != null) {
+      // Not asked for by a state, load it now
+      load(sound);
+      samples = sounds.get(sound);
+    }
+    if (samples != null && mixer != null) {
+      mixer.play(sound, samples, gain);
     }
   }
 
-  // When called stops the sound/music
+  // When called stops the sound/music, music fades out
   public static void stop(Integer sound) {
-    if (soundClips.get(sound) != null) {
-      if (soundClips.get(sound).isRunning()) {
-        soundClips.get(sound).stop();
-      }
+    if (mixer != null) {
+      mixer.stop(sound);
     }
   }
 
-  // Loops the sound until stopped.
+  public static void stopAll() {
+    if (mixer != null) {
+      mixer.stopAll();
+    }
+  }
+
+  // Loops the sound until stopped. startAt is the frame in the file that the
+  // loop starts over from. Music fades in, over any other music that plays.
   public static void playLoop(Integer sound, Integer startAt) {
-    if (!soundClips.get(sound).isRunning()) {
-      soundClips.get(sound).setLoopPoints(startAt,
-          soundClips.get(sound).getFrameLength() - 1);
-      soundClips.get(sound).setFramePosition(startAt);
-      soundClips.get(sound).loop(Clip.LOOP_CONTINUOUSLY);
+    if (streamed.contains(sound)) {
+      if (mixer != null) {
+        mixer.stream(sound, fileNames.get(sound), true, startAt, 1.0f);
+      }
+      return;
     }
+    short[] samples = sounds.get(sound);
+    if (samples != null && mixer != null) {
+      int start = (int) (startAt * SoundMixer.SAMPLE_RATE
+          / sampleRates.get(sound));
+      mixer.loop(sound, samples, start, 1.0f);
+    }
+  }
+
+  public static SoundMixer getMixer() {
+    return mixer;
   }
 }
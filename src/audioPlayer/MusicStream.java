@@ -0,0 +1,173 @@
+package audioPlayer;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+// A music file decoded a small chunk at a time on a thread of its own, into a
+// ring buffer that the mixer reads from. Only the ring buffer is kept in
+// memory, not the whole track. A looping stream starts over at 'startAt'
+// (in frames of the file) without a gap, as the decoder fills the ring
+// buffer straight on from the start again.
+public class MusicStream implements Runnable {
+  // About 0.75 s of music at the mixer rate, decoded 2048 frames at a time
+  private static final int RING_SIZE = 32768;
+  private static final int CHUNK_FRAMES = 2048;
+
+  private String fileName;
+  private boolean loop;
+  private int startAt;
+
+  // Written by the decoder, read by the mixer. Each side only moves its own
+  // position.
+  private short[] ring = new short[RING_SIZE];
+  private volatile long written;
+  private volatile long read;
+  private volatile boolean finished;
+  private volatile boolean closed;
+
+  // Decoder state
+  private AudioInputStream in;
+  private int channels;
+  private byte[] chunk;
+  // Resampling, how far between two file samples the next sample is and the
+  // last sample of the previous chunk
+  private double step;
+  private double phase;
+  private short last;
+
+  public MusicStream(String fileName, boolean loop, int startAt) {
+    this.fileName = fileName;
+    this.loop = loop;
+    this.startAt = startAt;
+  }
+
+  public void start() {
+    Thread t = new Thread(this, "Music stream " + fileName);
+    t.setDaemon(true);
+    t.start();
+  }
+
+  public void close() {
+    closed = true;
+  }
+
+  // The stream has ended, and everything has been read
+  public boolean isFinished() {
+    return finished && read == written;
+  }
+
+  // Read up to 'length' samples, called by the mixer. Returns how many there
+  // were, fewer if the decoder hasn't kept up.
+  public int read(short[] buffer, int length) {
+    long r = read;
+    int n = (int) Math.min(length, written - r);
+    for (int i = 0; i < n; ++i) {
+      buffer[i] = ring[(int) ((r + i) & (RING_SIZE - 1))];
+    }
+    read = r + n;
+    return n;
+  }
+
+  public void run() {
+    try {
+      open(0);
+      while (!closed) {
+        int frames = in.read(chunk) / (channels * 2);
+        if (frames <= 0) {
+          in.close();
+          if (!loop) {
+            break;
+          }
+          open(startAt);
+          continue;
+        }
+        write(frames);
+      }
+    } catch (UnsupportedAudioFileException e) {
+      e.printStackTrace();
+    } catch (IOException e) {
+      e.printStackTrace();
+    } catch (InterruptedException e) {
+      e.printStackTrace();
+    } finally {
+      finished = true;
+      if (in != null) {
+        try {
+          in.close();
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+      }
+    }
+  }
+
+  // Open the file, decoded to little endian 16 bit samples, at a frame
+  private void open(int frame)
+      throws UnsupportedAudioFileException, IOException {
+    InputStream source = new BufferedInputStream(
+        MusicStream.class.getResourceAsStream(fileName));
+    AudioInputStream raw = AudioSystem.getAudioInputStream(source);
+    AudioFormat format = raw.getFormat();
+    AudioFormat decode = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED,
+        format.getSampleRate(), 16, format.getChannels(),
+        format.getChannels() * 2, format.getSampleRate(), false);
+    in = AudioSystem.getAudioInputStream(decode, raw);
+
+    if (chunk == null) {
+      channels = format.getChannels();
+      chunk = new byte[CHUNK_FRAMES * channels * 2];
+      step = format.getSampleRate() / SoundMixer.SAMPLE_RATE;
+    }
+
+    long skip = (long) frame * channels * 2;
+    while (skip > 0) {
+      long skipped = in.skip(skip);
+      if (skipped <= 0) {
+        break;
+      }
+      skip -= skipped;
+    }
+  }
+
+  // Mix the chunk down to mono at the mixer rate, and put it in the ring
+  // buffer, waiting for the mixer to make room
+  private void write(int frames) throws InterruptedException {
+    for (int i = 0; i < frames && !closed; ++i) {
+      int sum = 0;
+      for (int c = 0; c < channels; ++c) {
+        int b = (i * channels + c) * 2;
+        sum += (short) ((chunk[b] & 0xff) | (chunk[b + 1] << 8));
+      }
+      short sample = (short) (sum / channels);
+
+      if (step == 1.0) {
+        put(sample);
+      } else {
+        // Samples between the last one and this one, in straight lines
+        while (phase < 1.0) {
+          put((short) (last + (sample - last) * phase));
+          phase += step;
+        }
+        phase -= 1.0;
+      }
+      last = sample;
+    }
+  }
+
+  private void put(short sample) throws InterruptedException {
+    while (written - read >= RING_SIZE) {
+      if (closed) {
+        return;
+      }
+      Thread.sleep(5);
+    }
+    ring[(int) (written & (RING_SIZE - 1))] = sample;
+    written = written + 1;
+  }
+}
@@ -0,0 +1,396 @@
+package audioPlayer;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.SourceDataLine;
+
+// Mixes every playing sound into one line, on a thread of its own. The game
+// only posts commands to it, so starting or stopping a sound never waits on
+// the audio system. Sounds are given to it decoded, as 16 bit mono samples at
+// SAMPLE_RATE, and music as streams that are decoded while they play.
+public class SoundMixer implements Runnable {
+  public static final float SAMPLE_RATE = 44100f;
+
+  // How many voices can play at once, and how many of them one sound may use
+  // before its oldest voice is stolen
+  public static final int MAX_VOICES = 24;
+  public static final int MAX_VOICES_PER_SOUND = 4;
+
+  // Frames mixed in one go (about 6 ms), and how much the line may hold ahead
+  // of what is heard (about 46 ms)
+  private static final int FRAMES = 256;
+  private static final int LINE_FRAMES = 2048;
+
+  // How long a stream takes to fade in or out, one stream starting while
+  // another plays makes them cross fade (about 1 s)
+  public static final int FADE_FRAMES = 44100;
+
+  private static final int PLAY = 0;
+  private static final int LOOP = 1;
+  private static final int STOP = 2;
+  private static final int STOP_ALL = 3;
+  private static final int STREAM = 4;
+
+  private static class Command {
+    private int type;
+    private int sound;
+    private short[] samples;
+    private int startAt;
+    private float gain;
+    private String fileName;
+    private boolean loop;
+
+    public Command(int type, int sound, short[] samples, int startAt,
+        float gain) {
+      this.type = type;
+      this.sound = sound;
+      this.samples = samples;
+      this.startAt = startAt;
+      this.gain = gain;
+    }
+  }
+
+  private static class Voice {
+    private boolean active;
+    private int sound;
+    private short[] samples;
+    private int position;
+    private boolean loop;
+    private int loopStart;
+    private float gain;
+    // When the voice was started, the lowest is the oldest
+    private long started;
+    // Music that is read from a stream instead of samples, and how loud it
+    // is while fading (0.0 - 1.0) and how much that changes per frame
+    private MusicStream stream;
+    private float level;
+    private float levelStep;
+  }
+
+  // Posted by the game, read by the mixer thread
+  private ConcurrentLinkedQueue<Command> commands = new ConcurrentLinkedQueue<Command>();
+
+  // Only touched by the mixer thread
+  private Voice[] voices = new Voice[MAX_VOICES];
+  private long voicesStarted;
+  private int[] mix = new int[FRAMES];
+  private byte[] out = new byte[FRAMES * 2];
+  private short[] streamed = new short[FRAMES];
+
+  private SourceDataLine line;
+  private Thread thread;
+  private volatile boolean running;
+
+  // Statistics
+  private volatile int playing;
+  private volatile long stolen;
+
+  public SoundMixer() {
+    for (int i = 0; i < voices.length; ++i) {
+      voices[i] = new Voice();
+    }
+  }
+
+  // Open the line and start mixing. Without a line to play on, the voices
+  // are still mixed in time, only not heard.
+  public void start() {
+    try {
+      AudioFormat format = new AudioFormat(SAMPLE_RATE, 16, 1, true, false);
+      line = AudioSystem.getSourceDataLine(format);
+      line.open(format, LINE_FRAMES * 2);
+      line.start();
+    } catch (Exception e) {
+      e.printStackTrace();
+      line = null;
+    }
+
+    running = true;
+    thread = new Thread(this, "Sound mixer");
+    thread.setDaemon(true);
+    thread.setPriority(Thread.MAX_PRIORITY);
+    thread.start();
+  }
+
+  public void shutdown() {
+    running = false;
+  }
+
+  public void play(int sound, short[] samples, float gain) {
+    commands.add(new Command(PLAY, sound, samples, 0, gain));
+  }
+
+  public void loop(int sound, short[] samples, int startAt, float gain) {
+    commands.add(new Command(LOOP, sound, samples, startAt, gain));
+  }
+
+  // Stream a music file, fading out the music that plays
+  public void stream(int sound, String fileName, boolean loop, int startAt,
+      float gain) {
+    Command c = new Command(STREAM, sound, null, startAt, gain);
+    c.fileName = fileName;
+    c.loop = loop;
+    commands.add(c);
+  }
+
+  public void stop(int sound) {
+    commands.add(new Command(STOP, sound, null, 0, 0));
+  }
+
+  public void stopAll() {
+    commands.add(new Command(STOP_ALL, 0, null, 0, 0));
+  }
+
+  public boolean hasLine() {
+    return line != null;
+  }
+
+  public int getPlaying() {
+    return playing;
+  }
+
+  public long getStolen() {
+    return stolen;
+  }
+
+  public void run() {
+    long next = System.nanoTime();
+    long period = (long) (FRAMES * 1000000000L / SAMPLE_RATE);
+    while (running) {
+      runCommands();
+      mix();
+
+      if (line != null) {
+        // Blocks until the line has room, which keeps the mixer in time
+        line.write(out, 0, out.length);
+      } else {
+        next += period;
+        long sleep = next - System.nanoTime();
+        if (sleep > 0) {
+          try {
+            Thread.sleep(sleep / 1000000, (int) (sleep % 1000000));
+          } catch (InterruptedException e) {
+            e.printStackTrace();
+          }
+        }
+      }
+    }
+    if (line != null) {
+      line.drain();
+      line.close();
+    }
+  }
+
+  private void runCommands() {
+    Command c;
+    while ((c = commands.poll()) != null) {
+      switch (c.type) {
+      case PLAY:
+        startVoice(c, false);
+        break;
+      case LOOP:
+        // A sound that is already playing isn't started over
+        if (!isPlaying(c.sound)) {
+          startVoice(c, true);
+        }
+        break;
+      case STREAM:
+        startStream(c);
+        break;
+      case STOP:
+        // Music fades out, sounds stop at once
+        for (Voice v : voices) {
+          if (v.active && v.sound == c.sound) {
+            if (v.stream != null) {
+              fadeOut(v);
+            } else {
+              release(v);
+            }
+          }
+        }
+        break;
+      case STOP_ALL:
+        for (Voice v : voices) {
+          release(v);
+        }
+        break;
+      }
+    }
+  }
+
+  private boolean isPlaying(int sound) {
+    for (Voice v : voices) {
+      if (v.active && v.sound == sound) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void startVoice(Command c, boolean loop) {
+    if (c.samples.length == 0) {
+      return;
+    }
+    Voice v = findVoice(c.sound);
+    release(v);
+    v.active = true;
+    v.sound = c.sound;
+    v.samples = c.samples;
+    v.loop = loop;
+    v.loopStart = Math.max(0, Math.min(c.startAt, c.samples.length - 1));
+    v.position = v.loopStart;
+    v.gain = c.gain;
+    v.started = ++voicesStarted;
+    v.level = 1.0f;
+    v.levelStep = 0;
+  }
+
+  // Start a stream, fading in over the music that plays, which fades out. If
+  // the music asked for already plays (or is fading out), it's kept.
+  private void startStream(Command c) {
+    Voice same = null;
+    for (Voice v : voices) {
+      if (v.active && v.stream != null) {
+        if (v.sound == c.sound && same == null) {
+          same = v;
+        } else {
+          fadeOut(v);
+        }
+      }
+    }
+    if (same != null) {
+      same.levelStep = 1.0f / FADE_FRAMES;
+      return;
+    }
+
+    Voice v = findVoice(c.sound);
+    release(v);
+    v.active = true;
+    v.sound = c.sound;
+    v.samples = null;
+    v.loop = c.loop;
+    v.gain = c.gain;
+    v.started = ++voicesStarted;
+    v.stream = new MusicStream(c.fileName, c.loop, c.startAt);
+    v.stream.start();
+    boolean crossFade = false;
+    for (Voice o : voices) {
+      crossFade |= o != v && o.active && o.stream != null;
+    }
+    v.level = crossFade ? 0.0f : 1.0f;
+    v.levelStep = 1.0f / FADE_FRAMES;
+  }
+
+  private void fadeOut(Voice v) {
+    v.levelStep = -1.0f / FADE_FRAMES;
+  }
+
+  // Free a voice, and stop the decoding of its stream
+  private void release(Voice v) {
+    if (v.stream != null) {
+      v.stream.close();
+      v.stream = null;
+    }
+    v.active = false;
+  }
+
+  // A free voice, or the one to steal: the oldest voice of the same sound if
+  // it uses too many, else the oldest voice that isn't looping (music), else
+  // the oldest of all
+  private Voice findVoice(int sound) {
+    Voice free = null;
+    Voice oldestSame = null;
+    Voice oldestOnce = null;
+    Voice oldest = null;
+    int same = 0;
+    for (Voice v : voices) {
+      if (!v.active) {
+        if (free == null) {
+          free = v;
+        }
+        continue;
+      }
+      if (v.sound == sound) {
+        ++same;
+        if (oldestSame == null || v.started < oldestSame.started) {
+          oldestSame = v;
+        }
+      }
+      if (!v.loop && (oldestOnce == null || v.started < oldestOnce.started)) {
+        oldestOnce = v;
+      }
+      if (oldest == null || v.started < oldest.started) {
+        oldest = v;
+      }
+    }
+
+    if (same >= MAX_VOICES_PER_SOUND) {
+      ++stolen;
+      return oldestSame;
+    }
+    if (free != null) {
+      return free;
+    }
+    ++stolen;
+    return (oldestOnce != null) ? oldestOnce : oldest;
+  }
+
+  // Add what the stream has decoded into the mix, fading it in or out
+  private void mixStream(Voice v) {
+    int n = v.stream.read(streamed, FRAMES);
+    float level = v.level;
+    for (int i = 0; i < n; ++i) {
+      level += v.levelStep;
+      if (level >= 1.0f) {
+        level = 1.0f;
+      } else if (level <= 0.0f) {
+        release(v);
+        return;
+      }
+      mix[i] += (int) (streamed[i] * v.gain * level);
+    }
+    v.level = level;
+    if (v.stream.isFinished()) {
+      release(v);
+    }
+  }
+
+  // Add every voice into the mix, and clip it to 16 bits
+  private void mix() {
+    Arrays.fill(mix, 0);
+    int count = 0;
+    for (Voice v : voices) {
+      if (!v.active) {
+        continue;
+      }
+      ++count;
+      if (v.stream != null) {
+        mixStream(v);
+        continue;
+      }
+      short[] samples = v.samples;
+      int gain = (int) (v.gain * 256);
+      int position = v.position;
+      for (int i = 0; i < FRAMES; ++i) {
+        if (position >= samples.length) {
+          if (!v.loop) {
+            release(v);
+            break;
+          }
+          position = v.loopStart;
+        }
+        mix[i] += (samples[position++] * gain) >> 8;
+      }
+      v.position = position;
+    }
+    playing = count;
+
+    for (int i = 0; i < FRAMES; ++i) {
+      int s = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, mix[i]));
+      out[i * 2] = (byte) s;
+      out[i * 2 + 1] = (byte) (s >> 8);
+    }
+  }
+}
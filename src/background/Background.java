@@ -1,12 +1,11 @@
 package background;
 
 import java.awt.Graphics2D;
-import java.awt.Point;
 import java.awt.geom.Point2D;
 
 import game.Game;
 import gameState.GameStateManager;
-import ioManager.IoManager;
+import ioManager.AssetRegistry;
 import tileManager.TileManager;
 import tileMap.RoomMap;
 
@@ -15,6 +14,14 @@ public class Background {
   private RoomMap room;
   private String fileName;
 
+  // The room map baked into one image, for drawing. Not baked when running
+  // headless, where nothing is drawn.
+  private ParallaxLayer layer;
+
+  // How much the layer moves along with the state position. 1.0 moves with
+  // the playground, less than that lags behind for a parallax effect.
+  private double scrollFactor;
+
   // Current Position (the total map x)
   private Point2D.Double coords = new Point2D.Double(0.0, 0.0);
   // Position Movement Vector
@@ -30,12 +37,32 @@ public class Background {
     setPos(new Point2D.Double(0.0, 0.0));
     setVec(new Point2D.Double(0.0, 0.0));
     s = 1.0;
+    scrollFactor = 1.0;
   }
 
   private void load(){
-    IoManager io = new IoManager(fileName);
-    io.load();
-    room = io.getRoom();
+    room = AssetRegistry.getRoom(fileName);
+    if (!sm.isHeadless()) {
+      layer = ParallaxLayer.get(room, TileManager.getTileSet());
+    }
+    sm.loadStepDone();
+  }
+
+  // Rough size of the room and the baked layer, in bytes
+  public long getMemoryEstimate() {
+    // The layer is counted even when it isn't baked (headless), so the same
+    // states are cached either way
+    long tiles = (long) room.getColumns() * room.getRows();
+    return tiles * 6
+        + tiles * TileManager.TILE_SIZE * TileManager.TILE_SIZE * 4;
+  }
+
+  public void setScrollFactor(double scrollFactor) {
+    this.scrollFactor = scrollFactor;
+  }
+
+  public double getScrollFactor() {
+    return scrollFactor;
   }
   
   public void setPos(Point2D.Double coords) {
@@ -75,44 +102,13 @@ public class Background {
   }
 
   public void render(Graphics2D g2d) {
-    double x = coords.getX();
-    double y = coords.getY();
-    int ts = TileManager.TILE_SIZE;
-
-    // Screen Tile Size (+2 for buffer above, below, left and right) (in
-    // tiles)
-    int scrTileW = Game.WIN_COLS + 2;
-    int scrTileH = Game.WIN_ROWS + 2;
-
-    // Map position, where on the map to start reading tiles (in tiles)
-    int cMapPosX = (int) (x / TileManager.TILE_SIZE);
-    int cMapPosY = (int) (y / TileManager.TILE_SIZE);
-
-    // Wrap map
-    if (cMapPosX < 0) {
-      cMapPosX += room.getWidth() + Game.WIN_COLS;
-    }
-    if (cMapPosX >= room.getWidth() + Game.WIN_COLS) {
-      cMapPosX -= room.getWidth() - Game.WIN_COLS;
-    }
-    if (cMapPosY < 0) {
-      cMapPosY += room.getHeight() + Game.WIN_ROWS;
-    }
-    if (cMapPosY >= room.getWidth() + Game.WIN_ROWS) {
-      cMapPosY = room.getWidth() - Game.WIN_ROWS;
-    }
+    layer.render(g2d, coords.getX(), coords.getY());
+  }
 
-    for (int h = 0; h < scrTileH; ++h) {
-      for (int w = 0; w < scrTileW; ++w) {
-        Point tmpos = new Point(((cMapPosX + w) % room.getColumns()),
-            ((cMapPosY + h) % room.getRows()));
-        if (room.getImageId(tmpos) != 0) {
-          int tx = (w * ts) - (int) (x % TileManager.TILE_SIZE);
-          int ty = (h * ts) - (int) (y % TileManager.TILE_SIZE);
-          g2d.drawImage(TileManager.getTileImage(room.getImageId(tmpos)),
-              tx, ty, null);
-        }
-      }
-    }
+  // Render the layer offset by the position of the state (the camera),
+  // scaled with the scroll factor of the layer
+  public void render(Graphics2D g2d, Point2D.Double camera) {
+    layer.render(g2d, coords.getX() + camera.getX() * scrollFactor,
+        coords.getY() + camera.getY() * scrollFactor);
   }
 }
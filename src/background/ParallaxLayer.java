@@ -0,0 +1,88 @@
+package background;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.WeakHashMap;
+
+import game.Game;
+import tileManager.TileManager;
+import tileMap.RoomMap;
+
+// A room map baked into a single image that wraps around in both directions.
+// Scrolling it around only takes a few blits (four when the layer is at least
+// as big as the screen), one for each part of the image that shows.
+public class ParallaxLayer {
+  // Layers baked from shared rooms, by room and tile set. Shared rooms never
+  // change, so the same image can be used by everyone. A layer is forgotten
+  // when its room is no longer used (rooms are told apart by identity).
+  private static WeakHashMap<RoomMap, HashMap<Integer, ParallaxLayer>> baked = new WeakHashMap<RoomMap, HashMap<Integer, ParallaxLayer>>();
+
+  private BufferedImage strip;
+  private int width;
+  private int height;
+
+  // Get the layer for a room, baked once for shared rooms
+  public static synchronized ParallaxLayer get(RoomMap room, int set) {
+    if (!room.isShared()) {
+      return new ParallaxLayer(room, set);
+    }
+    HashMap<Integer, ParallaxLayer> sets = baked.get(room);
+    if (sets == null) {
+      sets = new HashMap<Integer, ParallaxLayer>();
+      baked.put(room, sets);
+    }
+    ParallaxLayer layer = sets.get(set);
+    if (layer == null) {
+      layer = new ParallaxLayer(room, set);
+      sets.put(set, layer);
+    }
+    return layer;
+  }
+
+  public ParallaxLayer(RoomMap room, int set) {
+    int ts = TileManager.TILE_SIZE;
+    width = room.getColumns() * ts;
+    height = room.getRows() * ts;
+    strip = TileManager.createCompatibleImage(width, height);
+
+    // Draw every tile that isn't id 0 (transparent) onto the image
+    Graphics2D g2d = strip.createGraphics();
+    for (int x = 0; x < room.getColumns(); ++x) {
+      for (int y = 0; y < room.getRows(); ++y) {
+        int id = room.getImageId(x, y);
+        if (id != 0) {
+          TileManager.drawTile(g2d, id, set, x * ts, y * ts);
+        }
+      }
+    }
+    g2d.dispose();
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  // Draw the layer so that the top left corner of the screen shows the pixel
+  // x, y of the layer
+  public void render(Graphics2D g2d, double x, double y) {
+    int ox = Math.floorMod((int) Math.floor(x), width);
+    int oy = Math.floorMod((int) Math.floor(y), height);
+
+    for (int ty = -oy; ty < Game.WIN_H; ty += height) {
+      for (int tx = -ox; tx < Game.WIN_W; tx += width) {
+        // Only blit the part of this copy of the image that is on the screen
+        int dx1 = Math.max(tx, 0);
+        int dy1 = Math.max(ty, 0);
+        int dx2 = Math.min(tx + width, Game.WIN_W);
+        int dy2 = Math.min(ty + height, Game.WIN_H);
+        g2d.drawImage(strip, dx1, dy1, dx2, dy2, dx1 - tx, dy1 - ty, dx2 - tx,
+            dy2 - ty, null);
+      }
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package entity;
+
+// Sets the velocity of the entities that think for themselves. Runs before
+// the movement, and reacts on what the movement ran into last tick.
+public class AiSystem {
+  private static final int THINKING = EntityStore.POSITION
+      | EntityStore.VELOCITY | EntityStore.AI;
+
+  // How fast the dead slow down
+  private static final double DEAD_STOP = 0.025;
+
+  public void update(EntityStore es) {
+    int size = es.size;
+    int[] mask = es.mask;
+    int[] flags = es.flags;
+
+    for (int id = 0; id < size; ++id) {
+      if ((mask[id] & THINKING) != THINKING) {
+        continue;
+      }
+      int f = flags[id];
+      if ((f & EntityStore.FLAG_ALIVE) == 0) {
+        // The dead slide to a stop
+        double dx = es.dx[id];
+        if (dx > 0.0) {
+          es.dx[id] = Math.max(dx - DEAD_STOP, 0.0);
+        } else if (dx < 0.0) {
+          es.dx[id] = Math.min(dx + DEAD_STOP, 0.0);
+        }
+        continue;
+      }
+
+      double speed = es.aiSpeed[id];
+      switch (es.aiType[id]) {
+      case EntityStore.AI_WALKER:
+        // Turn around at walls, and speed up the way it's facing
+        if ((f & EntityStore.FLAG_BLOCKED_X) != 0) {
+          f ^= EntityStore.FLAG_FACE_RIGHT;
+        }
+        double dx = es.dx[id];
+        if ((f & EntityStore.FLAG_FACE_RIGHT) != 0) {
+          dx = Math.min(dx + es.aiAcceleration[id], speed);
+        } else {
+          dx = Math.max(dx - es.aiAcceleration[id], -speed);
+        }
+        es.dx[id] = dx;
+        if (es.sprite[id] != null) {
+          if (dx > 0.0) {
+            es.play(id, EntityStore.ANIM_RIGHT);
+          } else if (dx < 0.0) {
+            es.play(id, EntityStore.ANIM_LEFT);
+          } else {
+            es.play(id, EntityStore.ANIM_STANDBY);
+          }
+        }
+        break;
+      case EntityStore.AI_BOUNCER:
+        // Start off diagonally, then bounce off whatever is hit
+        if (es.dx[id] == 0.0 || (f & EntityStore.FLAG_BLOCKED_X) != 0) {
+          f ^= EntityStore.FLAG_FACE_RIGHT;
+          es.dx[id] = (f & EntityStore.FLAG_FACE_RIGHT) != 0 ? speed : -speed;
+        }
+        if (es.dy[id] == 0.0) {
+          es.dy[id] = (es.aiTimer[id] & 1) == 0 ? speed : -speed;
+          ++es.aiTimer[id];
+        }
+        break;
+      default:
+        break;
+      }
+      flags[id] = f;
+    }
+  }
+}
@@ -0,0 +1,34 @@
+package entity;
+
+// Steps the animations once per tick, so they run at the same speed no matter
+// how often the entities are drawn
+public class AnimationSystem {
+
+  public void update(EntityStore es) {
+    int size = es.size;
+    int[] mask = es.mask;
+    int[][] frames = es.frames;
+    int[] frame = es.frame;
+    int[] delay = es.delay;
+
+    for (int id = 0; id < size; ++id) {
+      if ((mask[id] & EntityStore.ANIMATION) == 0) {
+        continue;
+      }
+      if (++delay[id] < es.delayLimit[id]) {
+        continue;
+      }
+      delay[id] = 0;
+      int next = frame[id] + 1;
+      if (next >= frames[id].length) {
+        if (es.loop[id]) {
+          next = 0;
+        } else {
+          next = frames[id].length - 1;
+          es.flags[id] |= EntityStore.FLAG_ANIM_DONE;
+        }
+      }
+      frame[id] = next;
+    }
+  }
+}
@@ -0,0 +1,409 @@
+package entity;
+
+import java.util.Arrays;
+
+import gameState.Replay;
+import mapObject.MapObject;
+
+// All the entities of a state, stored as one array per field instead of one
+// object per entity, so the systems can run through them in tight loops.
+// An entity is just an index into the arrays, and the mask tells which
+// components it has. Ids of destroyed entities are reused.
+public class EntityStore {
+  // Components
+  public static final int POSITION = 1;
+  public static final int VELOCITY = 2;
+  public static final int HITBOX = 4;
+  public static final int ANIMATION = 8;
+  public static final int AI = 16;
+  public static final int GRAVITY = 32;
+  // Can be shot and hurts the player, has hp and a score
+  public static final int ENEMY = 64;
+
+  // State flags
+  public static final int FLAG_ALIVE = 1;
+  public static final int FLAG_REMOVE = 2;
+  public static final int FLAG_FALLING = 4;
+  public static final int FLAG_FACE_RIGHT = 8;
+  public static final int FLAG_BLOCKED_X = 16;
+  public static final int FLAG_BLOCKED_Y = 32;
+  // Was hit this tick, but is still alive
+  public static final int FLAG_HIT = 64;
+  // An animation that doesn't loop has shown its last frame
+  public static final int FLAG_ANIM_DONE = 128;
+
+  // AI types
+  public static final int AI_NONE = 0;
+  // Walks left and right on the ground, turns around at walls
+  public static final int AI_WALKER = 1;
+  // Flies around and bounces off walls
+  public static final int AI_BOUNCER = 2;
+
+  // The animations of a walker, by their number in its sprite
+  public static final int ANIM_LEFT = 0;
+  public static final int ANIM_STANDBY = 1;
+  public static final int ANIM_RIGHT = 2;
+  public static final int ANIM_DEATH = 3;
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  // Number of ids that has been handed out, and how many of them are in use
+  int size;
+  private int count;
+  private int[] freeIds;
+  private int freeCount;
+
+  int[] mask;
+  int[] flags;
+
+  // Position and the position before the last tick (for interpolation)
+  double[] x;
+  double[] y;
+  double[] lastX;
+  double[] lastY;
+
+  // Velocity
+  double[] dx;
+  double[] dy;
+  double[] fallSpeed;
+  double[] fallSpeedMax;
+
+  // Hit box against other objects, centered on the position
+  int[] hitW;
+  int[] hitH;
+
+  // Animation, the frames are tile ids and can be shared between entities.
+  // With a sprite, the frames are those of one of its animations.
+  int[][] frames;
+  int[] frame;
+  int[] delay;
+  int[] delayLimit;
+  boolean[] loop;
+  Sprite[] sprite;
+  int[] anim;
+
+  // AI
+  int[] aiType;
+  double[] aiSpeed;
+  double[] aiAcceleration;
+  int[] aiTimer;
+
+  // Enemy, and the ticks it's left after death before it's removed
+  int[] hp;
+  int[] score;
+  int[] deathTimer;
+
+  public EntityStore() {
+    allocate(INITIAL_CAPACITY);
+  }
+
+  private void allocate(int capacity) {
+    freeIds = new int[capacity];
+    mask = new int[capacity];
+    flags = new int[capacity];
+    x = new double[capacity];
+    y = new double[capacity];
+    lastX = new double[capacity];
+    lastY = new double[capacity];
+    dx = new double[capacity];
+    dy = new double[capacity];
+    fallSpeed = new double[capacity];
+    fallSpeedMax = new double[capacity];
+    hitW = new int[capacity];
+    hitH = new int[capacity];
+    frames = new int[capacity][];
+    frame = new int[capacity];
+    delay = new int[capacity];
+    delayLimit = new int[capacity];
+    loop = new boolean[capacity];
+    sprite = new Sprite[capacity];
+    anim = new int[capacity];
+    aiType = new int[capacity];
+    aiSpeed = new double[capacity];
+    aiAcceleration = new double[capacity];
+    aiTimer = new int[capacity];
+    hp = new int[capacity];
+    score = new int[capacity];
+    deathTimer = new int[capacity];
+  }
+
+  private void grow() {
+    int capacity = mask.length * 2;
+    freeIds = Arrays.copyOf(freeIds, capacity);
+    mask = Arrays.copyOf(mask, capacity);
+    flags = Arrays.copyOf(flags, capacity);
+    x = Arrays.copyOf(x, capacity);
+    y = Arrays.copyOf(y, capacity);
+    lastX = Arrays.copyOf(lastX, capacity);
+    lastY = Arrays.copyOf(lastY, capacity);
+    dx = Arrays.copyOf(dx, capacity);
+    dy = Arrays.copyOf(dy, capacity);
+    fallSpeed = Arrays.copyOf(fallSpeed, capacity);
+    fallSpeedMax = Arrays.copyOf(fallSpeedMax, capacity);
+    hitW = Arrays.copyOf(hitW, capacity);
+    hitH = Arrays.copyOf(hitH, capacity);
+    frames = Arrays.copyOf(frames, capacity);
+    frame = Arrays.copyOf(frame, capacity);
+    delay = Arrays.copyOf(delay, capacity);
+    delayLimit = Arrays.copyOf(delayLimit, capacity);
+    loop = Arrays.copyOf(loop, capacity);
+    sprite = Arrays.copyOf(sprite, capacity);
+    anim = Arrays.copyOf(anim, capacity);
+    aiType = Arrays.copyOf(aiType, capacity);
+    aiSpeed = Arrays.copyOf(aiSpeed, capacity);
+    aiAcceleration = Arrays.copyOf(aiAcceleration, capacity);
+    aiTimer = Arrays.copyOf(aiTimer, capacity);
+    hp = Arrays.copyOf(hp, capacity);
+    score = Arrays.copyOf(score, capacity);
+    deathTimer = Arrays.copyOf(deathTimer, capacity);
+  }
+
+  // Create a new, alive entity at x, y
+  public int create(double px, double py) {
+    int id;
+    if (freeCount > 0) {
+      id = freeIds[--freeCount];
+    } else {
+      if (size == mask.length) {
+        grow();
+      }
+      id = size++;
+    }
+    ++count;
+
+    mask[id] = POSITION;
+    flags[id] = FLAG_ALIVE | FLAG_FACE_RIGHT;
+    x[id] = lastX[id] = px;
+    y[id] = lastY[id] = py;
+    dx[id] = dy[id] = 0.0;
+    fallSpeed[id] = fallSpeedMax[id] = 0.0;
+    hitW[id] = hitH[id] = 0;
+    frames[id] = null;
+    frame[id] = delay[id] = delayLimit[id] = 0;
+    loop[id] = true;
+    sprite[id] = null;
+    anim[id] = -1;
+    aiType[id] = AI_NONE;
+    aiSpeed[id] = aiAcceleration[id] = 0.0;
+    aiTimer[id] = 0;
+    hp[id] = score[id] = deathTimer[id] = 0;
+    return id;
+  }
+
+  // Tag the entity for removal, it's destroyed by removeDead()
+  public void remove(int id) {
+    flags[id] |= FLAG_REMOVE;
+  }
+
+  // Destroy all the entities tagged for removal. Called once at the end of the
+  // tick, so the ids stay valid while the systems run.
+  public void removeDead() {
+    for (int id = 0; id < size; ++id) {
+      if (mask[id] != 0 && (flags[id] & FLAG_REMOVE) != 0) {
+        mask[id] = 0;
+        frames[id] = null;
+        sprite[id] = null;
+        freeIds[freeCount++] = id;
+        --count;
+      }
+    }
+  }
+
+  public void clear() {
+    Arrays.fill(mask, 0, size, 0);
+    Arrays.fill(frames, 0, size, null);
+    Arrays.fill(sprite, 0, size, null);
+    size = 0;
+    count = 0;
+    freeCount = 0;
+  }
+
+  public boolean exists(int id) {
+    return id >= 0 && id < size && mask[id] != 0;
+  }
+
+  public boolean has(int id, int components) {
+    return (mask[id] & components) == components;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  // Ids handed out so far, all the ids in use are below it
+  public int getSize() {
+    return size;
+  }
+
+  // Add the entities in use to a checksum (see gameState.Replay)
+  public int checksum(int h) {
+    for (int id = 0; id < size; ++id) {
+      if (mask[id] == 0) {
+        continue;
+      }
+      h = Replay.mix(h, id);
+      h = Replay.mix(h, x[id]);
+      h = Replay.mix(h, y[id]);
+      h = Replay.mix(h, dx[id]);
+      h = Replay.mix(h, dy[id]);
+      h = Replay.mix(h, flags[id]);
+      h = Replay.mix(h, frame[id]);
+      h = Replay.mix(h, hp[id]);
+    }
+    return h;
+  }
+
+  public void setVelocity(int id, double vx, double vy) {
+    mask[id] |= VELOCITY;
+    dx[id] = vx;
+    dy[id] = vy;
+  }
+
+  public void setGravity(int id, double fall, double fallMax) {
+    mask[id] |= GRAVITY;
+    fallSpeed[id] = fall;
+    fallSpeedMax[id] = fallMax;
+  }
+
+  public void setHitBox(int id, int width, int height) {
+    mask[id] |= HITBOX;
+    hitW[id] = width;
+    hitH[id] = height;
+  }
+
+  public void setAnimation(int id, int[] tileIds, int frameDelay,
+      boolean looping) {
+    mask[id] |= ANIMATION;
+    frames[id] = tileIds;
+    frame[id] = 0;
+    delay[id] = 0;
+    delayLimit[id] = frameDelay;
+    loop[id] = looping;
+  }
+
+  // Show the animations of a sprite, starting with animation n
+  public void setSprite(int id, Sprite s, int n) {
+    mask[id] |= ANIMATION;
+    sprite[id] = s;
+    anim[id] = -1;
+    play(id, n);
+  }
+
+  // Switch to animation n of the entity's sprite. It starts from its first
+  // frame, unless it's already the one showing.
+  public void play(int id, int n) {
+    if (anim[id] == n) {
+      return;
+    }
+    Sprite s = sprite[id];
+    anim[id] = n;
+    frames[id] = s.frames[n];
+    frame[id] = 0;
+    delay[id] = 0;
+    delayLimit[id] = s.delays[n];
+    loop[id] = s.loops[n];
+    flags[id] &= ~FLAG_ANIM_DONE;
+  }
+
+  public void setAi(int id, int type, double speed) {
+    setAi(id, type, speed, speed);
+  }
+
+  // Speeds up by 'acceleration' each tick, until it moves at 'speed'
+  public void setAi(int id, int type, double speed, double acceleration) {
+    mask[id] |= AI;
+    aiType[id] = type;
+    aiSpeed[id] = speed;
+    aiAcceleration[id] = acceleration;
+    aiTimer[id] = 0;
+  }
+
+  // Something that can be shot 'hp' times, gives 'points' when it dies and
+  // is removed 'ticks' after that
+  public void setEnemy(int id, int hitPoints, int points, int ticks) {
+    mask[id] |= ENEMY;
+    hp[id] = hitPoints;
+    score[id] = points;
+    deathTimer[id] = ticks;
+  }
+
+  public void setFaceRight(int id, boolean right) {
+    if (right) {
+      flags[id] |= FLAG_FACE_RIGHT;
+    } else {
+      flags[id] &= ~FLAG_FACE_RIGHT;
+    }
+  }
+
+  public double getX(int id) {
+    return x[id];
+  }
+
+  public double getY(int id) {
+    return y[id];
+  }
+
+  public boolean isAlive(int id) {
+    return (flags[id] & FLAG_ALIVE) != 0;
+  }
+
+  public void kill(int id) {
+    flags[id] &= ~FLAG_ALIVE;
+  }
+
+  // Take one hp, returns true if that killed the entity
+  public boolean hit(int id) {
+    if (--hp[id] <= 0) {
+      kill(id);
+      return true;
+    }
+    flags[id] |= FLAG_HIT;
+    return false;
+  }
+
+  public int getHp(int id) {
+    return hp[id];
+  }
+
+  public int getScore(int id) {
+    return score[id];
+  }
+
+  // The hit box, top left corner and size
+  public int getHitBoxX(int id) {
+    return (int) x[id] - hitW[id] / 2;
+  }
+
+  public int getHitBoxY(int id) {
+    return (int) y[id] - hitH[id] / 2;
+  }
+
+  public int getHitBoxWidth(int id) {
+    return hitW[id];
+  }
+
+  public int getHitBoxHeight(int id) {
+    return hitH[id];
+  }
+
+  // The current tile id of the entity's animation
+  public int getTileId(int id) {
+    return frames[id][frame[id]];
+  }
+
+  // Check if the hit box of an entity overlaps the hit box of a map object
+  public boolean intersect(int id, MapObject mo) {
+    int w = hitW[id];
+    int h = hitH[id];
+    int tw = mo.getHitBoxWidth();
+    int th = mo.getHitBoxHeight();
+    if ((mask[id] & HITBOX) == 0 || w <= 0 || h <= 0 || tw <= 0 || th <= 0) {
+      return false;
+    }
+    int ex = getHitBoxX(id);
+    int ey = getHitBoxY(id);
+    int tx = mo.getHitBoxX();
+    int ty = mo.getHitBoxY();
+    return ex < tx + tw && tx < ex + w && ey < ty + th && ty < ey + h;
+  }
+}
@@ -0,0 +1,42 @@
+package entity;
+
+import java.awt.Graphics2D;
+
+import tileMap.CollisionMap;
+
+// The entities of a state and the systems that run them, in the order they
+// run each tick. The map objects of the state run next to it, GameState tests
+// the two against each other.
+public class EntityWorld {
+  private EntityStore store = new EntityStore();
+  private HealthSystem health = new HealthSystem();
+  private AiSystem ai = new AiSystem();
+  private MovementSystem movement = new MovementSystem();
+  private AnimationSystem animation = new AnimationSystem();
+  private RenderSystem renderer = new RenderSystem();
+
+  public EntityStore getStore() {
+    return store;
+  }
+
+  public void update(CollisionMap map) {
+    health.update(store);
+    ai.update(store);
+    movement.update(store, map);
+    animation.update(store);
+    store.removeDead();
+  }
+
+  // Only the animations, for entities that are shown but not run
+  public void animate() {
+    animation.update(store);
+  }
+
+  public void render(Graphics2D g2d, double interpolation) {
+    renderer.render(store, g2d, interpolation);
+  }
+
+  public void clear() {
+    store.clear();
+  }
+}
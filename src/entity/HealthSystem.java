@@ -0,0 +1,32 @@
+package entity;
+
+// Runs first each tick. The flash of a hit from the tick before is over, and
+// the dead enemies show their death and are removed once it has played and
+// their time is up.
+public class HealthSystem {
+
+  public void update(EntityStore es) {
+    int size = es.size;
+    int[] mask = es.mask;
+    int[] flags = es.flags;
+
+    for (int id = 0; id < size; ++id) {
+      if ((mask[id] & EntityStore.ENEMY) == 0) {
+        continue;
+      }
+      int f = flags[id] & ~EntityStore.FLAG_HIT;
+      flags[id] = f;
+      if ((f & EntityStore.FLAG_ALIVE) != 0) {
+        continue;
+      }
+      boolean played = true;
+      if (es.sprite[id] != null) {
+        es.play(id, EntityStore.ANIM_DEATH);
+        played = (flags[id] & EntityStore.FLAG_ANIM_DONE) != 0;
+      }
+      if (--es.deathTimer[id] < 0 && played) {
+        es.remove(id);
+      }
+    }
+  }
+}
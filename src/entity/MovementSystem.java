@@ -0,0 +1,126 @@
+package entity;
+
+import game.Game;
+import mapObject.MapObject;
+import tileManager.TileManager;
+import tileMap.CollisionMap;
+
+// Moves everything that has a velocity, pulls it down if it has gravity and
+// stops it at solid tiles. Works like the tile collision of the map objects
+// (MapObject.checkTileMapCollision): the tile hit box is one tile centered on
+// the position, and both ways are tested from where the entity was.
+public class MovementSystem {
+  private static final int MOVING = EntityStore.POSITION
+      | EntityStore.VELOCITY;
+
+  public void update(EntityStore es, CollisionMap map) {
+    int size = es.size;
+    int[] mask = es.mask;
+    int[] flags = es.flags;
+    double[] x = es.x;
+    double[] y = es.y;
+    double[] dx = es.dx;
+    double[] dy = es.dy;
+
+    for (int id = 0; id < size; ++id) {
+      int m = mask[id];
+      if ((m & EntityStore.POSITION) == 0) {
+        continue;
+      }
+      es.lastX[id] = x[id];
+      es.lastY[id] = y[id];
+      if ((m & MOVING) != MOVING) {
+        continue;
+      }
+
+      int f = flags[id] & ~(EntityStore.FLAG_BLOCKED_X
+          | EntityStore.FLAG_BLOCKED_Y);
+      double vx = dx[id];
+      double vy = dy[id];
+
+      boolean alive = (f & EntityStore.FLAG_ALIVE) != 0;
+
+      // The dead keep the speed they had when they died
+      if ((m & EntityStore.GRAVITY) != 0 && alive
+          && (f & EntityStore.FLAG_FALLING) != 0) {
+        vy += es.fallSpeed[id];
+        if (vy > es.fallSpeedMax[id]) {
+          vy = es.fallSpeedMax[id];
+        }
+      }
+
+      double ox = x[id];
+      double oy = y[id];
+      double px = ox;
+      double py = oy;
+
+      if (vx != 0.0) {
+        if (map != null && isSolid(map, ox + vx, oy)) {
+          int mapx = (int) (ox / TileManager.TILE_SIZE);
+          if (vx < 0.0) {
+            px = mapx * TileManager.TILE_SIZE + TileManager.HALF_TILE;
+          } else {
+            px = (mapx + 1) * TileManager.TILE_SIZE - TileManager.HALF_TILE;
+          }
+          vx = 0.0;
+          f |= EntityStore.FLAG_BLOCKED_X;
+        } else {
+          px += vx;
+        }
+      }
+      double fy = oy + vy;
+      if (vy != 0.0) {
+        if (map != null && isSolid(map, ox, fy)) {
+          int mapy = (int) (oy / TileManager.TILE_SIZE);
+          if (vy < 0.0) {
+            py = mapy * TileManager.TILE_SIZE + TileManager.HALF_TILE;
+          } else {
+            py = (mapy + 1) * TileManager.TILE_SIZE - TileManager.HALF_TILE;
+            f &= ~EntityStore.FLAG_FALLING;
+          }
+          vy = 0.0;
+          f |= EntityStore.FLAG_BLOCKED_Y;
+        } else {
+          py += vy;
+        }
+      }
+
+      // Start falling when there's nothing to stand on
+      if ((m & EntityStore.GRAVITY) != 0
+          && (map == null || !isSolid(map, ox, fy + 1))) {
+        f |= EntityStore.FLAG_FALLING;
+      }
+
+      // Keep the living on the screen, like the map objects (the screen edges
+      // stop them but don't block them, so walkers don't turn there)
+      if (alive) {
+        px = Math.min(Math.max(px, 0.0), MapObject.SCREEN_MAX_X);
+        py = Math.min(Math.max(py, 0.0), MapObject.SCREEN_MAX_Y);
+      }
+      // Wrap the dead around it, without drawing them sliding across
+      if (px >= Game.WIN_W) {
+        px %= Game.WIN_W;
+        es.lastX[id] = px;
+      }
+      if (py >= Game.WIN_H) {
+        py %= Game.WIN_H;
+        es.lastY[id] = py;
+      }
+
+      x[id] = px;
+      y[id] = py;
+      dx[id] = vx;
+      dy[id] = vy;
+      flags[id] = f;
+    }
+  }
+
+  // Does a tile sized box centered on x, y touch a solid tile
+  private boolean isSolid(CollisionMap map, double cx, double cy) {
+    int wTile = (int) (cx - TileManager.HALF_TILE) / TileManager.TILE_SIZE;
+    int eTile = (int) (cx + TileManager.HALF_TILE - 1) / TileManager.TILE_SIZE;
+    int nTile = (int) (cy - TileManager.HALF_TILE) / TileManager.TILE_SIZE;
+    int sTile = (int) (cy + TileManager.HALF_TILE - 1) / TileManager.TILE_SIZE;
+    return map.isAnySolid(wTile, nTile, eTile, sTile);
+  }
+}
@@ -0,0 +1,45 @@
+package entity;
+
+import java.awt.Point;
+
+import tileManager.TileManager;
+
+// Walks along the ground and turns around at walls. Takes four shots.
+public class Mushroom {
+  private static final int[] DEATH = { (10 * 32 + 21), (10 * 32 + 22),
+      (10 * 32 + 23), (10 * 32 + 24), (10 * 32 + 25), (10 * 32 + 26),
+      (10 * 32 + 27), (10 * 32 + 28), (10 * 32 + 29), (10 * 32 + 30),
+      (10 * 32 + 31), (11 * 32 + 26), (11 * 32 + 27), (11 * 32 + 28),
+      (11 * 32 + 29), (11 * 32 + 30), (11 * 32 + 31) };
+
+  // TILEDATA
+  private static final Sprite SPRITE = new Sprite(4)
+      .set(EntityStore.ANIM_LEFT, Sprite.range(8 * 32 + 21, 6), 20, true)
+      .set(EntityStore.ANIM_STANDBY, Sprite.range(9 * 32 + 21, 6), 50, true)
+      .set(EntityStore.ANIM_RIGHT, Sprite.range(7 * 32 + 21, 6), 20, true)
+      .set(EntityStore.ANIM_DEATH, DEATH, 3, false);
+
+  // Add a mushroom on the tile spawnPoint, walking right or left. Returns its
+  // entity id.
+  public static int create(EntityStore es, Point spawnPoint,
+      boolean walkRight) {
+    int id = create(es, spawnPoint);
+    es.setFaceRight(id, walkRight);
+    es.setAi(id, EntityStore.AI_WALKER, 2, 0.2);
+    es.play(id, walkRight ? EntityStore.ANIM_RIGHT : EntityStore.ANIM_LEFT);
+    return id;
+  }
+
+  // Add a mushroom that stands still
+  public static int create(EntityStore es, Point spawnPoint) {
+    int id = es.create(
+        spawnPoint.getX() * TileManager.TILE_SIZE + TileManager.HALF_TILE,
+        spawnPoint.getY() * TileManager.TILE_SIZE + TileManager.HALF_TILE);
+    es.setVelocity(id, 0.0, 0.0);
+    es.setGravity(id, 0.2, 10);
+    es.setHitBox(id, 12, 12);
+    es.setEnemy(id, 4, 10000, 100);
+    es.setSprite(id, SPRITE, EntityStore.ANIM_STANDBY);
+    return id;
+  }
+}
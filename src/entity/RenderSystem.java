@@ -0,0 +1,36 @@
+package entity;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+
+import tileManager.TileManager;
+
+// Draws the current animation frame of every entity, in between its last and
+// current position, and flashes the ones that were hit
+public class RenderSystem {
+  private static final int DRAWN = EntityStore.POSITION
+      | EntityStore.ANIMATION;
+
+  public void render(EntityStore es, Graphics2D g2d, double interpolation) {
+    int size = es.size;
+    int[] mask = es.mask;
+
+    for (int id = 0; id < size; ++id) {
+      if ((mask[id] & DRAWN) != DRAWN) {
+        continue;
+      }
+      double lx = es.lastX[id];
+      double ly = es.lastY[id];
+      double rx = lx + (es.x[id] - lx) * interpolation;
+      double ry = ly + (es.y[id] - ly) * interpolation;
+      TileManager.drawTile(g2d, es.getTileId(id),
+          (int) (rx - TileManager.HALF_TILE), (int) (ry - TileManager.HALF_TILE));
+      if ((es.flags[id] & EntityStore.FLAG_HIT) != 0) {
+        int w = es.hitW[id];
+        int h = es.hitH[id];
+        g2d.setColor(Color.WHITE);
+        g2d.fillOval((int) rx - w / 2, (int) ry - h / 2, w, h);
+      }
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package entity;
+
+// The animations of a kind of entity, shared by all the entities of that
+// kind. Each animation is a list of tile ids, how many ticks each frame shows
+// and if it loops. Which one is shown is kept per entity (EntityStore.play).
+public class Sprite {
+  int[][] frames;
+  int[] delays;
+  boolean[] loops;
+
+  public Sprite(int animations) {
+    frames = new int[animations][];
+    delays = new int[animations];
+    loops = new boolean[animations];
+  }
+
+  public Sprite set(int n, int[] tileIds, int delay, boolean looping) {
+    frames[n] = tileIds;
+    delays[n] = delay;
+    loops[n] = looping;
+    return this;
+  }
+
+  // 'count' tiles in a row on the tile sheet, starting with 'first'
+  public static int[] range(int first, int count) {
+    int[] tileIds = new int[count];
+    for (int i = 0; i < count; ++i) {
+      tileIds[i] = first + i;
+    }
+    return tileIds;
+  }
+}
@@ -1,19 +1,28 @@
 package game;
 
+import java.awt.BorderLayout;
+import java.awt.Canvas;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Toolkit;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.geom.Point2D;
+import java.awt.image.BufferStrategy;
 import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
 import java.util.Random;
 
 import javax.swing.JPanel;
 
 import audioPlayer.AudioPlayer;
+import gameState.AssetManifest;
 import gameState.GameStateManager;
+import gameState.Replay;
+import ioManager.AssetRegistry;
 import tileManager.TileManager;
 
 @SuppressWarnings("serial")
@@ -31,26 +40,54 @@ public class Game extends JPanel implements Runnable, KeyListener {
 	public static final int ACTION_SLOWFALL = 3;
 	public static final int ACTION_DAMAGE = 4;
 
+	// Simulation steps per second, and how many steps a single frame may
+	// catch up on before the remaining lag is dropped
+	public static final int UPDATES_PER_SECOND = 60;
+	public static final long UPDATE_STEP = 1000000000L / UPDATES_PER_SECOND;
+	private static final int MAX_UPDATES_PER_FRAME = 5;
+
 	private boolean shake;
 	private double shakeReturn;
 	private double shakeScale;
 	private int shakeTimer;
 	private int shakeTimerInit;
 	private Point2D.Double shakeCoords;
+	// Seeded from the simulation, so a replay shakes the same
+	private Random shakeRandom;
 
 	private Thread thread;
 
 	private boolean quit;
 
+	// Passive rendering, a software image drawn onto the panel
 	private BufferedImage bufferedImage;
 	private Graphics2D graphics;
 
+	// Active rendering, an accelerated image page flipped onto a canvas
+	private boolean activeRendering;
+	private Canvas canvas;
+	private BufferStrategy strategy;
+	private VolatileImage volatileImage;
+
 	private GameStateManager sm;
 
 	// Prepare window for the game
 	public Game() {
 		setPreferredSize(new Dimension(WIN_W * WIN_S, WIN_H * WIN_S));
 		setFocusable(true);
+
+		// Let a canvas cover the whole panel when rendering actively, the panel
+		// will then never paint anything by itself
+		activeRendering = GameMain.useActiveRendering();
+		if (activeRendering) {
+			setLayout(new BorderLayout());
+			setIgnoreRepaint(true);
+			canvas = new Canvas();
+			canvas.setPreferredSize(new Dimension(WIN_W * WIN_S, WIN_H * WIN_S));
+			canvas.setIgnoreRepaint(true);
+			canvas.setFocusable(true);
+			add(canvas, BorderLayout.CENTER);
+		}
 		requestFocus();
 	}
 
@@ -60,14 +97,35 @@ public class Game extends JPanel implements Runnable, KeyListener {
 		super.addNotify();
 		if (thread == null) {
 			thread = new Thread(this);
-			addKeyListener(this);
+			if (activeRendering) {
+				canvas.requestFocus();
+			}
 			thread.start();
 		}
 	}
 
+	// Set up page flipping on the canvas, falls back to passive rendering if
+	// the canvas can't get a buffer strategy
+	private void initActiveRendering() {
+		try {
+			canvas.createBufferStrategy(2);
+			strategy = canvas.getBufferStrategy();
+		} catch (IllegalStateException e) {
+			e.printStackTrace();
+			activeRendering = false;
+			remove(canvas);
+			canvas = null;
+			setIgnoreRepaint(false);
+			requestFocus();
+		}
+	}
+
 	private void initialize() {
 		// Create the double buffer-image to draw on before drawing onto screen
-		bufferedImage = new BufferedImage(WIN_W * WIN_S, WIN_H * WIN_S, BufferedImage.TYPE_INT_RGB);
+		if (activeRendering) {
+			initActiveRendering();
+		}
+		bufferedImage = new BufferedImage(WIN_W, WIN_H, BufferedImage.TYPE_INT_RGB);
 		graphics = bufferedImage.createGraphics();
 
 		// The game will Exit by choosing Exit in the menus or closing the game
@@ -75,13 +133,39 @@ public class Game extends JPanel implements Runnable, KeyListener {
 		// exit further on.
 		quit = false;
 
-		// Initiate the TileManager
-		TileManager.init();
-		// Initiate the SoundPlayer
-		AudioPlayer.init();
-
+		// Load what the loading screen and the menu needs in parallel, the rest
+		// is loaded by the states when they need it
+		Startup startup = new Startup();
+		startup.add("tile manager", () -> TileManager.init());
+		startup.add("audio player", () -> AudioPlayer.init());
+		addLoadTasks(startup, GameStateManager.LEVEL_LOADING);
+		addLoadTasks(startup, GameStateManager.LEVEL_MENU);
 		// Start the game state manager
-		sm = new GameStateManager(this);
+		startup.add("state manager", () -> sm = new GameStateManager(this),
+				"tile manager", "audio player",
+				"room /assets/map/loading/loading.xml");
+		startup.run();
+		System.out.print(startup.getReport());
+
+		// Only listen to the keys once there is a state manager to pass them to
+		if (activeRendering) {
+			canvas.addKeyListener(this);
+		} else {
+			addKeyListener(this);
+		}
+
+		// Record the run, or play a recorded one back, from the first step
+		if (GameMain.getReplayFile() != null) {
+			Replay replay = Replay.load(GameMain.getReplayFile());
+			if (replay != null) {
+				sm.startReplay(replay);
+			}
+		} else if (GameMain.getRecordFile() != null) {
+			Replay recording = sm.startRecording();
+			Runtime.getRuntime().addShutdownHook(new Thread(
+					() -> recording.save(GameMain.getRecordFile())));
+		}
+		shakeRandom = new Random(sm.getSeed());
 
 		// Triggers and values for shaking the screen
 		shake = false;
@@ -92,60 +176,127 @@ public class Game extends JPanel implements Runnable, KeyListener {
 		shakeScale = 7.0;
 	}
 
+	// A task for every asset of a state, the same asset is only loaded once
+	private void addLoadTasks(Startup startup, int state) {
+		AssetManifest manifest = GameStateManager.createManifest(state);
+		for (int sheet : manifest.getSheets()) {
+			startup.addOnce("sheet " + sheet, () -> TileManager.load(sheet),
+					"tile manager");
+		}
+		for (int sound : manifest.getSounds()) {
+			startup.addOnce("sound " + sound, () -> AudioPlayer.load(sound),
+					"audio player");
+		}
+		for (String room : manifest.getRooms()) {
+			startup.addOnce("room " + room, () -> AssetRegistry.getRoom(room));
+		}
+	}
+
 	public void run() {
 		initialize();
 
-		// Limit the game to n fps
-		int fpsLimit = 60;
-		long fpsTimer = 1000 / fpsLimit;
-		long timerBegin;
-		long timerElapsed;
-		long timerWait;
+		// Limit the rendering to n fps. The simulation always runs at
+		// UPDATES_PER_SECOND, no matter how fast or slow the rendering is.
+		long frameStep = 1000000000L / GameMain.getFpsLimit();
+		long accumulator = 0;
+		long timerPrevious = System.nanoTime();
+		long timerNow;
+		long nextFrame = timerPrevious;
+		int updates;
 
 		// Main game loop
 		while (!quit) {
-			timerBegin = System.nanoTime();
+			timerNow = System.nanoTime();
+			accumulator += timerNow - timerPrevious;
+			timerPrevious = timerNow;
+
+			// Run as many fixed steps as the elapsed time allows, but only catch
+			// up a limited number of steps so a slow frame can't snowball
+			updates = 0;
+			while (accumulator >= UPDATE_STEP && updates < MAX_UPDATES_PER_FRAME) {
+				update();
+				accumulator -= UPDATE_STEP;
+				++updates;
+			}
+			if (accumulator >= UPDATE_STEP) {
+				accumulator %= UPDATE_STEP;
+			}
 
-			update();
-			renderBuffer();
-			renderScreen();
+			// Render if it's time for a new frame, interpolated by how far we are
+			// between the last and the next simulation step
+			if (timerNow >= nextFrame) {
+				renderBuffer((double) accumulator / UPDATE_STEP);
+				renderScreen();
+				nextFrame += frameStep;
+				if (nextFrame < timerNow) {
+					nextFrame = timerNow + frameStep;
+				}
+			}
 
-			// Determine if system is ready for the next frame (in nano seconds)
-			timerElapsed = System.nanoTime() - timerBegin;
-			timerWait = fpsTimer - timerElapsed / 1000000;
+			// Wait for whichever comes first, the next frame or the next step
+			sleepUntil(Math.min(timerNow + (UPDATE_STEP - accumulator), nextFrame));
+		}
+	}
 
-			if (timerWait < 0) {
-				timerWait = 0;
-			}
-			try {
-				Thread.sleep(timerWait);
-			} catch (Exception e) {
-				e.printStackTrace();
+	// Sleep until the given System.nanoTime(), the last bit is spent yielding
+	// since Thread.sleep is too coarse for that
+	private void sleepUntil(long deadline) {
+		long remaining = deadline - System.nanoTime();
+		while (remaining > 0) {
+			if (remaining > 2000000) {
+				try {
+					Thread.sleep(1);
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+			} else {
+				Thread.yield();
 			}
+			remaining = deadline - System.nanoTime();
 		}
 	}
 
-	// Let the state manager handle movements updates etc
+	// Let the state manager handle movements updates etc, one fixed step
 	private void update() {
 		sm.update();
+		doShake();
 	}
 
-	private void renderBuffer() {
+	private void renderBuffer(double interpolation) {
+		Graphics2D g2d = graphics;
+		if (activeRendering) {
+			g2d = createVolatileGraphics();
+		}
+
 		// Clear screen (set to black)
-		graphics.setColor(Color.BLACK);
-		graphics.fillRect(0, 0, WIN_W * WIN_S, WIN_H * WIN_S);
+		g2d.setColor(Color.BLACK);
+		g2d.fillRect(0, 0, WIN_W, WIN_H);
 
 		// Let the state manager handle the rendering
-		sm.render(graphics);
+		sm.render(g2d, interpolation);
+
+		if (activeRendering) {
+			g2d.dispose();
+		}
+	}
+
+	// The accelerated image can be lost at any time (display mode changes
+	// etc), so validate and recreate it if needed before every frame
+	private Graphics2D createVolatileGraphics() {
+		GraphicsConfiguration gc = canvas.getGraphicsConfiguration();
+		if (volatileImage == null
+				|| volatileImage.validate(gc) == VolatileImage.IMAGE_INCOMPATIBLE) {
+			volatileImage = gc.createCompatibleVolatileImage(WIN_W, WIN_H);
+		}
+		return volatileImage.createGraphics();
 	}
 
 	private void doShake() {
 		double dx = shakeCoords.getX();
 		double dy = shakeCoords.getY();
 		if (shake) {
-			Random r = new Random();
-			dx = (r.nextDouble() - 1.0 ) * shakeScale;
-			dy = (r.nextDouble() - 1.0 ) * shakeScale;
+			dx = (shakeRandom.nextDouble() - 1.0 ) * shakeScale;
+			dy = (shakeRandom.nextDouble() - 1.0 ) * shakeScale;
 			if (shakeTimer > 0) {
 				--shakeTimer;
 			} else {
@@ -188,17 +339,39 @@ public class Game extends JPanel implements Runnable, KeyListener {
 
 	// Draw the buffered image to the game canvas
 	private void renderScreen() {
-		Graphics g = getGraphics();
-		// Shake screen if needed
-		doShake();
+		// Shake screen if needed (the shake itself is advanced in update)
 		int shx = (int) shakeCoords.getX();
 		int shy = (int) shakeCoords.getY();
 
+		if (activeRendering) {
+			renderScreenActive(shx, shy);
+			return;
+		}
+
+		Graphics g = getGraphics();
 		// Scale the image up to preferred size, and draw it on the screen
 		g.drawImage(bufferedImage, shx, shy, WIN_W * WIN_S + shx, WIN_H * WIN_S + shy, 0, 0, WIN_W, WIN_H, null);
 		g.dispose();
 	}
 
+	// Scale the accelerated image up onto the back buffer and flip it to the
+	// screen. Redo it if the buffers got lost or restored on the way.
+	private void renderScreenActive(int shx, int shy) {
+		do {
+			do {
+				Graphics g = strategy.getDrawGraphics();
+				// The shake leaves the edges uncovered, so clear them
+				g.setColor(Color.BLACK);
+				g.fillRect(0, 0, WIN_W * WIN_S, WIN_H * WIN_S);
+				g.drawImage(volatileImage, shx, shy, WIN_W * WIN_S + shx, WIN_H * WIN_S + shy, 0, 0, WIN_W, WIN_H, null);
+				g.dispose();
+			} while (strategy.contentsRestored());
+			strategy.show();
+		} while (strategy.contentsLost());
+		// Flush the window system, or the flip may lag behind on some systems
+		Toolkit.getDefaultToolkit().sync();
+	}
+
 	// Let the state manager handle all the key presses
 	public void keyPressed(KeyEvent key) {
 		sm.keyPressed(key);
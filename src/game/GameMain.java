@@ -2,8 +2,14 @@ package game;
 
 import javax.swing.JFrame;
 
+import ioManager.IoManager;
+
 public class GameMain {
   private static int WIN_S = 2;
+  private static int FPS_LIMIT = 60;
+  private static boolean ACTIVE_RENDERING = true;
+  private static String RECORD_FILE;
+  private static String REPLAY_FILE;
 
   public static void main(String[] args) {
     if (args.length > 0) {
@@ -15,6 +21,33 @@ public class GameMain {
     	} catch (NumberFormatException e) {
       }
     }
+    // Second argument caps the rendering frame rate. The simulation, and the
+    // animations with it, always steps 60 times a second.
+    if (args.length > 1) {
+      try {
+        int fps = Integer.parseInt(args[1]);
+        if (fps > 0) {
+          FPS_LIMIT = fps;
+        }
+      } catch (NumberFormatException e) {
+      }
+    }
+    // "passive" anywhere on the command line falls back to drawing onto the
+    // panel with Swing instead of page flipping an accelerated canvas
+    // "dom" reads xml rooms with the old DOM parser instead of streaming them
+    // "record=<file>" records the run to the file when the game is left
+    // "replay=<file>" plays a recorded run back instead of the keys
+    for (String arg : args) {
+      if (arg.equalsIgnoreCase("passive")) {
+        ACTIVE_RENDERING = false;
+      } else if (arg.equalsIgnoreCase("dom")) {
+        IoManager.setXmlParser(IoManager.PARSER_DOM);
+      } else if (arg.startsWith("record=")) {
+        RECORD_FILE = arg.substring("record=".length());
+      } else if (arg.startsWith("replay=")) {
+        REPLAY_FILE = arg.substring("replay=".length());
+      }
+    }
     JFrame window = new JFrame("Generic Platformer");
     window.setContentPane(new Game());
     window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -26,4 +59,20 @@ public class GameMain {
   public static int getScale(){
     return WIN_S;
   }
+
+  public static int getFpsLimit(){
+    return FPS_LIMIT;
+  }
+
+  public static boolean useActiveRendering(){
+    return ACTIVE_RENDERING;
+  }
+
+  public static String getRecordFile(){
+    return RECORD_FILE;
+  }
+
+  public static String getReplayFile(){
+    return REPLAY_FILE;
+  }
 }
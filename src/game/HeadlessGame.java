@@ -0,0 +1,133 @@
+package game;
+
+import java.awt.event.KeyEvent;
+
+import gameState.GameStateManager;
+import gameState.PlayerSave;
+import gameState.Replay;
+
+// Runs the game states without a window, sound or rendering, one simulation
+// step after the other as fast as they can be run. Keys come from code
+// instead of the keyboard. Tile sheets and sounds are never loaded, only the
+// rooms.
+public class HeadlessGame {
+  // Gives the keys for a simulation step, before the step is run
+  public interface Input {
+    void update(long tick, GameStateManager sm);
+  }
+
+  private GameStateManager sm;
+  private Input input;
+
+  // Steps run, and the time spent running them
+  private long ticks;
+  private long nanos;
+
+  public HeadlessGame(Input input) {
+    this.input = input;
+    sm = new GameStateManager(null, true);
+  }
+
+  // Run 'steps' simulation steps, fewer if the game is left on the way
+  public void run(long steps) {
+    long start = System.nanoTime();
+    for (long i = 0; i < steps && !sm.hasQuit(); ++i) {
+      if (input != null) {
+        input.update(sm.getTicks(), sm);
+      }
+      sm.update();
+      ++ticks;
+    }
+    nanos += System.nanoTime() - start;
+  }
+
+  public GameStateManager getStateManager() {
+    return sm;
+  }
+
+  public long getTicks() {
+    return ticks;
+  }
+
+  public double getTicksPerSecond() {
+    return (nanos > 0) ? ticks * 1e9 / nanos : 0.0;
+  }
+
+  // Start the first level from the menu, run right while jumping and firing,
+  // and print how fast the steps ran. The first argument is the number of
+  // steps to run, ten minutes of game time if it's left out.
+  // "record=<file>" saves the run as a replay
+  // "replay=<file>" plays a replay back instead, and checks that every step
+  // comes out as recorded (exits with 1 if not)
+  // Anything else prints how to use it and exits with 2
+  public static void main(String[] args) {
+    System.setProperty("java.awt.headless", "true");
+    long steps = 10L * 60 * Game.UPDATES_PER_SECOND;
+    String recordFile = null;
+    String replayFile = null;
+    for (String arg : args) {
+      if (arg.startsWith("record=")) {
+        recordFile = arg.substring("record=".length());
+      } else if (arg.startsWith("replay=")) {
+        replayFile = arg.substring("replay=".length());
+      } else {
+        try {
+          steps = Long.parseLong(arg);
+        } catch (NumberFormatException e) {
+          steps = -1;
+        }
+        if (steps < 0) {
+          usage(arg);
+        }
+      }
+    }
+
+    if (replayFile != null) {
+      Replay replay = Replay.load(replayFile);
+      if (replay == null) {
+        System.exit(1);
+      }
+      HeadlessGame game = new HeadlessGame(null);
+      game.getStateManager().startReplay(replay);
+      game.run(replay.getSteps());
+      System.out.printf("%d steps at %.0f steps/s%n", game.getTicks(),
+          game.getTicksPerSecond());
+      if (replay.getMismatch() >= 0) {
+        System.exit(1);
+      }
+      return;
+    }
+
+    InputScript script = new InputScript();
+    script.hold(30, KeyEvent.VK_Z, 1);
+    script.press(60, KeyEvent.VK_RIGHT);
+    for (long t = 60; t < steps; t += 45) {
+      script.hold(t, KeyEvent.VK_X, 20);
+      script.hold(t + 10, KeyEvent.VK_C, 5);
+    }
+
+    HeadlessGame game = new HeadlessGame(script);
+    Replay recording = null;
+    if (recordFile != null) {
+      recording = game.getStateManager().startRecording();
+    }
+    game.run(steps);
+    if (recording != null && recording.save(recordFile)) {
+      System.out.println("Recorded " + recording.getSteps() + " steps, "
+          + recording.getEventCount() + " events to " + recordFile);
+    }
+    System.out.printf("%d steps at %.0f steps/s, in state %d%n",
+        game.getTicks(), game.getTicksPerSecond(),
+        game.getStateManager().getState());
+    System.out.println(PlayerSave.get(PlayerSave.PLAYER_DEATHCOUNT)
+        + " deaths, " + PlayerSave.get(PlayerSave.PLAYER_KILLCOUNT)
+        + " kills, " + PlayerSave.get(PlayerSave.PLAYER_SCORE) + " points");
+  }
+
+  private static void usage(String arg) {
+    System.err.println("Unknown argument: " + arg);
+    System.err.println("Usage: HeadlessGame [steps] [record=<file>]");
+    System.err.println("       HeadlessGame replay=<file>");
+    System.exit(2);
+  }
+}
@@ -0,0 +1,62 @@
+package game;
+
+import java.util.ArrayList;
+
+import gameState.GameStateManager;
+
+// Key presses and releases given ahead of time, each at the simulation step
+// it happens on. Steps are counted from when the state manager was made.
+public class InputScript implements HeadlessGame.Input {
+  private static class Event {
+    private long tick;
+    private int key;
+    private boolean pressed;
+  }
+
+  // Kept in the order of their steps, events on the same step in the order
+  // they were added
+  private ArrayList<Event> events = new ArrayList<Event>();
+  private int next;
+
+  public InputScript press(long tick, int key) {
+    return add(tick, key, true);
+  }
+
+  public InputScript release(long tick, int key) {
+    return add(tick, key, false);
+  }
+
+  // Press a key and let go of it 'ticks' steps later
+  public InputScript hold(long tick, int key, long ticks) {
+    press(tick, key);
+    return release(tick + Math.max(1, ticks), key);
+  }
+
+  private InputScript add(long tick, int key, boolean pressed) {
+    Event e = new Event();
+    e.tick = tick;
+    e.key = key;
+    e.pressed = pressed;
+    int i = events.size();
+    while (i > next && events.get(i - 1).tick > tick) {
+      --i;
+    }
+    events.add(i, e);
+    return this;
+  }
+
+  public boolean isDone() {
+    return next >= events.size();
+  }
+
+  public void update(long tick, GameStateManager sm) {
+    while (next < events.size() && events.get(next).tick <= tick) {
+      Event e = events.get(next++);
+      if (e.pressed) {
+        sm.keyPressed(e.key);
+      } else {
+        sm.keyReleased(e.key);
+      }
+    }
+  }
+}
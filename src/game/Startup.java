@@ -0,0 +1,108 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// The work done before the first frame, as tasks that wait only for the
+// tasks they depend on. Tasks run in parallel on a pool of worker threads,
+// and how long each took is kept for a report.
+public class Startup {
+  private class Task {
+    private String name;
+    private Runnable work;
+    private String[] after;
+    private CompletableFuture<Void> done;
+    private long start;
+    private long end;
+  }
+
+  // Tasks in the order they were added, a task can only depend on tasks
+  // added before it
+  private LinkedHashMap<String, Task> tasks = new LinkedHashMap<String, Task>();
+  private long started;
+  private long finished;
+
+  public void add(String name, Runnable work, String... after) {
+    for (String a : after) {
+      if (tasks.get(a) == null) {
+        throw new IllegalArgumentException(
+            "Task " + name + " depends on unknown task " + a);
+      }
+    }
+    Task t = new Task();
+    t.name = name;
+    t.work = work;
+    t.after = after;
+    tasks.put(name, t);
+  }
+
+  // Add a task unless there's one by that name already
+  public void addOnce(String name, Runnable work, String... after) {
+    if (tasks.get(name) == null) {
+      add(name, work, after);
+    }
+  }
+
+  // Run every task, and wait for all of them to finish
+  public void run() {
+    int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+    ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+      Thread t = new Thread(r, "Startup");
+      t.setDaemon(true);
+      return t;
+    });
+
+    started = System.nanoTime();
+    ArrayList<CompletableFuture<Void>> all = new ArrayList<CompletableFuture<Void>>();
+    for (Task t : tasks.values()) {
+      CompletableFuture<?>[] after = new CompletableFuture<?>[t.after.length];
+      for (int i = 0; i < after.length; ++i) {
+        after[i] = tasks.get(t.after[i]).done;
+      }
+      t.done = CompletableFuture.allOf(after).thenRunAsync(() -> {
+        t.start = System.nanoTime();
+        t.work.run();
+        t.end = System.nanoTime();
+      }, pool);
+      all.add(t.done);
+    }
+
+    try {
+      CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[0])).join();
+    } catch (CompletionException e) {
+      e.printStackTrace();
+    }
+    finished = System.nanoTime();
+    pool.shutdown();
+  }
+
+  public long getTotalNanos() {
+    return finished - started;
+  }
+
+  // When each task started and how long it took, in milliseconds from the
+  // start. Tasks that never ran (a task they depend on failed) are marked.
+  public String getReport() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("Startup %.1f ms%n", getTotalNanos() / 1e6));
+    // Line the times up after the longest name
+    int width = 1;
+    for (String name : tasks.keySet()) {
+      width = Math.max(width, name.length());
+    }
+    for (Task t : tasks.values()) {
+      if (t.end == 0) {
+        sb.append(String.format("  %-" + width + "s did not run%n", t.name));
+      } else {
+        sb.append(String.format(
+            "  %-" + width + "s at %6.1f ms, took %6.1f ms%n", t.name,
+            (t.start - started) / 1e6, (t.end - t.start) / 1e6));
+      }
+    }
+    return sb.toString();
+  }
+}
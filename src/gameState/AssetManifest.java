@@ -0,0 +1,154 @@
+package gameState;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import audioPlayer.AudioPlayer;
+import ioManager.AssetRegistry;
+import tileManager.TileManager;
+
+// The sounds, tile sheets and rooms a state needs, and the states that are
+// likely to come after it. Assets are counted by every manifest that has
+// acquired them, they are loaded by the first and unloaded when the last one
+// releases them.
+public class AssetManifest {
+  // How many acquired manifests that use each asset
+  private static HashMap<Integer, Integer> soundRefs = new HashMap<Integer, Integer>();
+  private static HashMap<Integer, Integer> sheetRefs = new HashMap<Integer, Integer>();
+  private static HashMap<String, Integer> roomRefs = new HashMap<String, Integer>();
+
+  private ArrayList<Integer> sounds = new ArrayList<Integer>();
+  private ArrayList<Integer> sheets = new ArrayList<Integer>();
+  private ArrayList<String> rooms = new ArrayList<String>();
+  private ArrayList<Integer> next = new ArrayList<Integer>();
+
+  public AssetManifest addSound(int... sound) {
+    for (int s : sound) {
+      sounds.add(s);
+    }
+    return this;
+  }
+
+  public AssetManifest addSheet(int... sheet) {
+    for (int s : sheet) {
+      sheets.add(s);
+    }
+    return this;
+  }
+
+  public AssetManifest addRoom(String... fileName) {
+    for (String f : fileName) {
+      rooms.add(f);
+    }
+    return this;
+  }
+
+  // States that may be entered from this one
+  public AssetManifest addNext(int... state) {
+    for (int s : state) {
+      next.add(s);
+    }
+    return this;
+  }
+
+  public ArrayList<Integer> getSounds() {
+    return sounds;
+  }
+
+  public ArrayList<Integer> getSheets() {
+    return sheets;
+  }
+
+  public ArrayList<String> getRooms() {
+    return rooms;
+  }
+
+  public ArrayList<Integer> getNext() {
+    return next;
+  }
+
+  // Count the assets as used, loading the ones that aren't loaded yet
+  public void acquire() {
+    for (int sound : sounds) {
+      if (increment(soundRefs, sound)) {
+        AudioPlayer.load(sound);
+      }
+    }
+    for (int sheet : sheets) {
+      if (increment(sheetRefs, sheet)) {
+        TileManager.load(sheet);
+      }
+    }
+    for (String room : rooms) {
+      if (increment(roomRefs, room)) {
+        AssetRegistry.getRoom(room);
+      }
+    }
+  }
+
+  // Count only the rooms as used. A state keeps the rooms it was built with,
+  // so they are kept in the registry for as long as the state is kept in the
+  // state cache, and entering it again doesn't load them once more.
+  public void acquireRooms() {
+    for (String room : rooms) {
+      if (increment(roomRefs, room)) {
+        AssetRegistry.getRoom(room);
+      }
+    }
+  }
+
+  public void releaseRooms() {
+    for (String room : rooms) {
+      if (decrement(roomRefs, room)) {
+        AssetRegistry.release(room);
+      }
+    }
+  }
+
+  // Count the assets as no longer used, unloading the ones no one uses
+  public void release() {
+    for (int sound : sounds) {
+      if (decrement(soundRefs, sound)) {
+        AudioPlayer.unload(sound);
+      }
+    }
+    for (int sheet : sheets) {
+      if (decrement(sheetRefs, sheet)) {
+        TileManager.unload(sheet);
+      }
+    }
+    for (String room : rooms) {
+      if (decrement(roomRefs, room)) {
+        AssetRegistry.release(room);
+      }
+    }
+  }
+
+  // True for the first use
+  private static synchronized <K> boolean increment(HashMap<K, Integer> refs,
+      K key) {
+    Integer count = refs.get(key);
+    refs.put(key, (count == null) ? 1 : count + 1);
+    return count == null;
+  }
+
+  // True for the last use
+  private static synchronized <K> boolean decrement(HashMap<K, Integer> refs,
+      K key) {
+    Integer count = refs.get(key);
+    if (count == null) {
+      return false;
+    }
+    if (count <= 1) {
+      refs.remove(key);
+      return true;
+    }
+    refs.put(key, count - 1);
+    return false;
+  }
+
+  public static synchronized String getStatistics() {
+    return soundRefs.size() + " sounds, " + sheetRefs.size() + " sheets, "
+        + roomRefs.size() + " rooms in use";
+  }
+}
@@ -10,13 +10,18 @@ import java.util.HashMap;
 
 import audioPlayer.AudioPlayer;
 import background.Background;
+import entity.EntityStore;
+import entity.EntityWorld;
 import game.Game;
-import ioManager.IoManager;
+import ioManager.AssetRegistry;
 import mapObject.Bullet;
 import mapObject.MapObject;
 import mapObject.Player;
+import mapObject.SpatialGrid;
+import tileManager.GlyphTable;
 import tileManager.TileManager;
 import tileMap.RoomMap;
+import tileMap.TileLayerCache;
 
 public abstract class GameState {
   protected Player player;
@@ -28,10 +33,24 @@ public abstract class GameState {
   // The intractable and other non intractable objects that are in the state
   protected ArrayList<MapObject> mapObjects = new ArrayList<MapObject>();
 
+  // Simple entities, run by systems instead of one update per object
+  protected EntityWorld entities = new EntityWorld();
+
   // The tile map associated with the state
   protected RoomMap room;
   protected GameStateManager sm;
 
+  // The tile map pre-rendered in chunks, rebuilt when the room is replaced
+  protected TileLayerCache roomCache;
+
+  // Broadphase grids for the collision checks, one cell per tile
+  private SpatialGrid ammoGrid = new SpatialGrid(Game.WIN_COLS, Game.WIN_ROWS,
+      TileManager.TILE_SIZE);
+  private SpatialGrid enemyGrid = new SpatialGrid(Game.WIN_COLS, Game.WIN_ROWS,
+      TileManager.TILE_SIZE);
+  private SpatialGrid mapObjectGrid = new SpatialGrid(Game.WIN_COLS,
+      Game.WIN_ROWS, TileManager.TILE_SIZE);
+
   protected HashMap<Integer, ArrayList<Background>> layers = new HashMap<Integer, ArrayList<Background>>();
 
   // Current Position (the total map x)
@@ -44,8 +63,12 @@ public abstract class GameState {
   // The speed of movement;
   protected double s;
 
+  // Has the state been entered before (it's then restarted on enter)
+  private boolean visited;
+
+  // States are built on the loader thread, so nothing outside of the state
+  // (PlayerSave, audio) is touched until it's entered
   public GameState(GameStateManager sm) {
-    PlayerSave.reset();
     this.sm = sm;
     layers.put(GameStateManager.LAYER_BACKGROUND, new ArrayList<Background>());
     layers.put(GameStateManager.LAYER_PLAYGROUND_BEHIND_MAPOBJECTS,
@@ -93,6 +116,31 @@ public abstract class GameState {
     return room.getHeight();
   }
 
+  // The tile map of the state, for collision queries
+  public RoomMap getRoom() {
+    return room;
+  }
+
+  // A hash of where the state and everything in it is, to tell if two runs
+  // have gone the same way (see Replay)
+  public int checksum() {
+    int h = Replay.mix(0, coords.getX());
+    h = Replay.mix(h, coords.getY());
+    if (player != null) {
+      h = player.checksum(h);
+    }
+    for (MapObject mo : mapObjects) {
+      h = mo.checksum(h);
+    }
+    for (MapObject e : enemy) {
+      h = e.checksum(h);
+    }
+    for (MapObject a : ammo) {
+      h = a.checksum(h);
+    }
+    return entities.getStore().checksum(h);
+  }
+
   public int getImageId(Point coords) {
     return room.getImageId(coords);
   }
@@ -102,21 +150,90 @@ public abstract class GameState {
   }
 
   public void modify(int imageId, int type, Point coords) {
+    makeRoomWritable();
     room.setTile(imageId, type, coords);
+    invalidateTile(coords);
   }
 
   public void modifyImageId(int imageId, Point coords) {
+    makeRoomWritable();
     room.setImageId(coords, imageId);
+    invalidateTile(coords);
+  }
+
+  // Redraw the cached chunk of a tile whose image has changed
+  private void invalidateTile(Point coords) {
+    if (roomCache != null) {
+      roomCache.invalidate((int) coords.getX(), (int) coords.getY());
+    }
   }
 
   public void modifyType(Point coords, int type) {
+    makeRoomWritable();
     room.setType(coords, type);
   }
 
+  // The room is shared with others until it's changed the first time, then
+  // the state gets its own copy (and the tile cache is rebuilt for it)
+  private void makeRoomWritable() {
+    if (room.isShared()) {
+      room = room.copy();
+    }
+  }
+
+  // Called on the game thread when the state becomes the current state. A
+  // state that has been entered before comes from the state cache, and is
+  // restarted instead of rebuilt.
+  public void enter() {
+    if (visited) {
+      restart();
+    } else {
+      start();
+    }
+    visited = true;
+    startMusic();
+  }
+
+  // The music of the state, started when the state is entered (not when it's
+  // built, that can be ahead of time)
+  protected void startMusic() {
+  }
+
+  // Set up what the player carries for the state, each time it's started
+  protected void start() {
+    PlayerSave.reset();
+  }
+
+  // Called when the state is left for another state
+  public void exit() {
+  }
+
+  // Put the state back to how it was when it was built
+  protected void restart() {
+    start();
+    reset();
+  }
+
+  // Rough size of what the state holds on to, in bytes
+  public long getMemoryEstimate() {
+    long bytes = 0;
+    if (room != null) {
+      bytes += (long) room.getColumns() * room.getRows() * 6;
+    }
+    if (roomCache != null) {
+      bytes += (long) roomCache.getWidth() * roomCache.getHeight() * 4;
+    }
+    for (ArrayList<Background> layer : layers.values()) {
+      for (Background b : layer) {
+        bytes += b.getMemoryEstimate();
+      }
+    }
+    return bytes;
+  }
+
   protected void load(String fileName) {
-    IoManager io = new IoManager(fileName);
-    io.load();
-    room = io.getRoom();
+    room = AssetRegistry.getRoom(fileName);
+    sm.loadStepDone();
   }
 
   public void updateBackground() {
@@ -149,6 +266,18 @@ public abstract class GameState {
     }
   }
 
+  // Step the animations of everything, without moving anything
+  protected void animateMapObjects() {
+    for (MapObject mo : mapObjects) {
+      mo.animate();
+    }
+    for (MapObject e : enemy) {
+      e.animate();
+    }
+    entities.animate();
+    player.animate();
+  }
+
   protected void mapObjectInteraction(MapObject mo) {
     // Check if the player can interact with a map object
     if (mo.intersect(player)) {
@@ -206,19 +335,32 @@ public abstract class GameState {
     // Map Objects
     for (MapObject mo : mapObjects) {
       mo.update();
-      mapObjectInteraction(mo);
+      mo.animate();
+    }
+
+    // Let the player interact with the map objects that are close by
+    mapObjectGrid.build(mapObjects);
+    int n = mapObjectGrid.query(player);
+    for (int i = 0; i < n; ++i) {
+      mapObjectInteraction(mapObjectGrid.getFound(i));
     }
 
     // Map Objects
     for (MapObject e : enemy) {
       e.update();
+      e.animate();
     }
 
+    // Entities
+    entities.update(room);
+
     // Player
     player.update();
+    player.animate();
     // Update each bullet
     for (MapObject bullet : ammo) {
       bullet.update();
+      bullet.animate();
     }
 
     if (player.didShoot()) {
@@ -226,49 +368,126 @@ public abstract class GameState {
       if (player.facingRight()) {
         bulletDisplacement = (TileManager.HALF_TILE / 2);
       }
-      ammo.add(new Bullet(sm,
+      Bullet bullet = sm.getBulletPool().acquire();
+      bullet.spawn(
           new Point2D.Double(player.getCoords().getX() + bulletDisplacement,
               player.getCoords().getY() + TileManager.HALF_TILE / 2 / 2),
-          player.facingRight()));
+          player.facingRight());
+      ammo.add(bullet);
       	sm.shakeScreen();
     }
 
-    // Resolve collisions
+    // Resolve collisions, each enemy is only tested against the bullets that
+    // share a grid cell with it
+    ammoGrid.build(ammo);
     for (MapObject e : enemy) {
-      for (MapObject a : ammo) {
+      n = ammoGrid.query(e);
+      for (int i = 0; i < n; ++i) {
+        MapObject a = ammoGrid.getFound(i);
         if (a.isAlive() && e.isAlive()) {
           if (a.intersect(e)) {
             AudioPlayer.play(AudioPlayer.SFX_BOOM);
             a.kill();
             if (e.kill()) {
-              AudioPlayer.play(AudioPlayer.SFX_ENEMYDEATH);
-              PlayerSave.addPoint(PlayerSave.PLAYER_KILLCOUNT);
-              PlayerSave.addPoint(PlayerSave.PLAYER_SCORE, e.getScore());
+              enemyKilled(e);
             }
           }
         }
       }
+    }
 
-      if (player.intersect(e) && e.isAlive() && player.isAlive()) {
-        player.kill();
-        PlayerSave.addPoint(PlayerSave.PLAYER_DEATHCOUNT);
-        AudioPlayer.play(AudioPlayer.SFX_DEATH);
+    // Same for the entities that are enemies
+    EntityStore es = entities.getStore();
+    for (int id = 0; id < es.getSize(); ++id) {
+      if (!es.has(id, EntityStore.ENEMY | EntityStore.HITBOX)
+          || !es.isAlive(id)) {
+        continue;
+      }
+      n = ammoGrid.query(es.getHitBoxX(id), es.getHitBoxY(id),
+          es.getHitBoxWidth(id), es.getHitBoxHeight(id));
+      for (int i = 0; i < n; ++i) {
+        MapObject a = ammoGrid.getFound(i);
+        if (a.isAlive() && es.isAlive(id) && es.intersect(id, a)) {
+          AudioPlayer.play(AudioPlayer.SFX_BOOM);
+          a.kill();
+          if (es.hit(id)) {
+            entityKilled(id);
+          }
+        }
       }
     }
 
-    // Remove bullets, enemies and map objects that has remove tag set
-    // Some enemies will not be removed, so the dead will stack up on screen
-    for (int i = 0; i < ammo.size(); ++i) {
-      if (ammo.get(i).timeToRemove()) {
-        ammo.remove(i);
+    enemyGrid.build(enemy);
+    n = enemyGrid.query(player);
+    for (int i = 0; i < n; ++i) {
+      MapObject e = enemyGrid.getFound(i);
+      if (player.intersect(e) && e.isAlive() && player.isAlive()) {
+        playerKilled();
+      }
+    }
+    for (int id = 0; id < es.getSize(); ++id) {
+      if (es.has(id, EntityStore.ENEMY) && es.isAlive(id)
+          && player.isAlive() && es.intersect(id, player)) {
+        playerKilled();
       }
     }
 
-    for (int i = 0; i < mapObjects.size(); ++i) {
-      if (mapObjects.get(i).timeToRemove()) {
-        mapObjects.remove(i);
+    removeDeadMapObjects();
+  }
+
+  // Drop the bullets, enemies and map objects that has the remove tag set.
+  // Done once at the end of the tick, so nothing is removed from a list while
+  // it's being iterated.
+  protected void removeDeadMapObjects() {
+    compact(ammo, true);
+    compact(enemy, false);
+    compact(mapObjects, false);
+  }
+
+  // Removes in a single pass by moving the objects that are kept forward, the
+  // order is kept since it's also the drawing order
+  private void compact(ArrayList<MapObject> list, boolean isAmmo) {
+    int size = list.size();
+    int kept = 0;
+    for (int i = 0; i < size; ++i) {
+      MapObject mo = list.get(i);
+      if (mo.timeToRemove()) {
+        if (isAmmo) {
+          releaseAmmo(mo);
+        }
+      } else {
+        if (kept != i) {
+          list.set(kept, mo);
+        }
+        ++kept;
       }
     }
+    if (kept < size) {
+      list.subList(kept, size).clear();
+    }
+  }
+
+  // Called when a bullet has taken the last hp of an enemy
+  protected void enemyKilled(MapObject e) {
+    addKill(e.getScore());
+  }
+
+  // Same for an enemy entity
+  protected void entityKilled(int id) {
+    addKill(entities.getStore().getScore(id));
+  }
+
+  private void addKill(int score) {
+    AudioPlayer.play(AudioPlayer.SFX_ENEMYDEATH);
+    PlayerSave.addPoint(PlayerSave.PLAYER_KILLCOUNT);
+    PlayerSave.addPoint(PlayerSave.PLAYER_SCORE, score);
+  }
+
+  // Called when the player runs into an enemy
+  private void playerKilled() {
+    player.kill();
+    PlayerSave.addPoint(PlayerSave.PLAYER_DEATHCOUNT);
+    AudioPlayer.play(AudioPlayer.SFX_DEATH);
   }
 
   protected void renderBossHp(Graphics2D g2d, MapObject boss) {
@@ -295,30 +514,18 @@ public abstract class GameState {
     }
   }
 
+  // Text in the large font, wrapped at 'columns'. The text is drawn once and
+  // kept as an image.
   protected void renderTextOverlay(Graphics2D g2d, String s, Point coords,
       int columns) {
-    int x = (int) coords.getX();
-    int y = (int) coords.getY();
-    s = s.toLowerCase();
-    int yOffset = 0;
-
-    for (int i = 0; i < s.length(); ++i) {
-      int c = (int) s.charAt(i);
-      c = getAsciiPos(c);
-      if (i % columns == 0 && i != 0) {
-        ++yOffset;
-      }
-      // Row 6 + c(position in alphabet) in tile sheet
-      int tile = 6 * 32 + c;
-      int tx = (x + i % columns) * TileManager.TILE_SIZE;
-      int ty = (y + yOffset) * TileManager.TILE_SIZE;
-      g2d.drawImage(TileManager.getTileImage(tile), tx, ty, null);
-    }
+    int x = (int) coords.getX() * TileManager.TILE_SIZE;
+    int y = (int) coords.getY() * TileManager.TILE_SIZE;
+    g2d.drawImage(sm.getTextCache().get(s, columns), x, y, null);
   }
 
   protected void renderBackgrounds(Graphics2D g2d) {
     for (Background b : layers.get(GameStateManager.LAYER_BACKGROUND)) {
-      b.render(g2d);
+      b.render(g2d, coords);
     }
 
   }
@@ -327,34 +534,23 @@ public abstract class GameState {
     // Playground, behind the map objects
     for (Background b : layers
         .get(GameStateManager.LAYER_PLAYGROUND_BEHIND_MAPOBJECTS)) {
-      b.render(g2d);
+      b.render(g2d, coords);
     }
 
   }
 
   protected void renderPlayground(Graphics2D g2d) {
-    // Map position, where on the map to start reading tiles (in tiles)
-    for (int tilePosX = 0; tilePosX < Game.WIN_COLS; ++tilePosX) {
-      for (int tilePosY = 0; tilePosY < Game.WIN_ROWS; ++tilePosY) {
-        // Create the coordinates for getting the tile image
-        Point tileSheetPos = new Point(((tilePosX) % room.getWidth()),
-            ((tilePosY) % room.getHeight()));
-        // If the tile image is not id 0 (transparent) then draw the image
-        int tx = (tilePosX * TileManager.TILE_SIZE)
-            - (int) (coords.getX() % TileManager.TILE_SIZE);
-        int ty = (tilePosY * TileManager.TILE_SIZE)
-            - (int) (coords.getY() % TileManager.TILE_SIZE);
-        if (room.getImageId(tileSheetPos) != 0) {
-          int id = room.getImageId(new Point(tileSheetPos));
-          int set = room.getSet(tileSheetPos);
-          g2d.drawImage(TileManager.getTileImage(id, set), tx, ty, null);
-        }
+    if (roomCache == null || roomCache.getRoom() != room) {
+      roomCache = new TileLayerCache(room);
+    }
 
-        /*
-         * // Draw the tile type (for debugging) g2d.setFont(new Font("Arial",
-         * Font.PLAIN, 8)); g2d.drawString("" + room.getType(new
-         * Point(tileSheetPos)), tx + 4, ty + 12);
-         */
+    // The tile map is drawn from its first tile, only offset by the part of a
+    // tile that the state has moved. Repeat it if it's smaller than the screen.
+    int ox = -(int) (coords.getX() % TileManager.TILE_SIZE);
+    int oy = -(int) (coords.getY() % TileManager.TILE_SIZE);
+    for (int tx = ox; tx < Game.WIN_W; tx += roomCache.getWidth()) {
+      for (int ty = oy; ty < Game.WIN_H; ty += roomCache.getHeight()) {
+        roomCache.render(g2d, tx, ty);
       }
     }
   }
@@ -370,6 +566,9 @@ public abstract class GameState {
       e.render(g2d);
     }
 
+    // Entities
+    entities.render(g2d, sm.getInterpolation());
+
     // Player
     player.render(g2d);
     if (player.timeToRemove()) {
@@ -390,48 +589,31 @@ public abstract class GameState {
     // Playground, in front of map objects
     for (Background b : layers
         .get(GameStateManager.LAYER_PLAYGROUND_INFRONTOF_MAPOBJECTS)) {
-      b.render(g2d);
+      b.render(g2d, coords);
     }
   }
 
   protected void renderForegrounds(Graphics2D g2d) {
     // Foregrounds
     for (Background b : layers.get(GameStateManager.LAYER_FOREGROUND)) {
-      b.render(g2d);
+      b.render(g2d, coords);
     }
   }
 
   protected void renderHud(Graphics2D g2d) {
-    renderHudElement(g2d, 3, "deaths",
-        PlayerSave.get(PlayerSave.PLAYER_DEATHCOUNT));
-    renderHudElement(g2d, 12, "kills",
-        PlayerSave.get(PlayerSave.PLAYER_KILLCOUNT));
-    renderHudElement(g2d, 20, "score", PlayerSave.get(PlayerSave.PLAYER_SCORE));
-    renderHudElement(g2d, 30, "key", (PlayerSave.has(Game.ACTION_KEY)) ? 1 : 0);
-    if (PlayerSave.has(Game.ACTION_SLOWFALL)) {
-      g2d.drawImage(TileManager.getTileImage((11 * 32) + 2),
-          17 * TileManager.TILE_SIZE, 0, null);
-    }
+    sm.getHud().render(g2d);
   }
 
   protected void renderSmallFont(Graphics2D g2d, int column, int row, String s,
       boolean offsetHalfTileX, boolean offsetHalfTileY) {
-    s = s.toLowerCase();
-
     // Print out the object name
     for (int i = 0; i < s.length(); ++i) {
-      int c = (int) s.charAt(i);
-      c = getAsciiPos(c);
-
-      int tile = getSmallFontPosition(c);
-      int q = getSmallFontQuadrant(c, false);
-
       int xoffset = (offsetHalfTileX) ? TileManager.HALF_TILE : 0;
       int x = (i * TileManager.HALF_TILE) + (column * TileManager.TILE_SIZE)
           + xoffset;
       int yoffset = (offsetHalfTileY) ? TileManager.HALF_TILE : 0;
       int y = TileManager.HALF_TILE + (row * TileManager.TILE_SIZE) + yoffset;
-      g2d.drawImage(TileManager.getQuarterTileImage(tile, q), x, y, null);
+      GlyphTable.drawSmall(g2d, s.charAt(i), x, y);
     }
   }
 
@@ -440,91 +622,6 @@ public abstract class GameState {
     renderSmallFont(g2d, column, row, s, false, false);
   }
 
-  private void renderHudElement(Graphics2D g2d, int column, String s,
-      Integer v) {
-    s = s.toLowerCase();
-
-    // Print out the type of value ("score", "keys" etc)
-    for (int i = 0; i < s.length(); ++i) {
-      int c = (int) s.charAt(i);
-      c = getAsciiPos(c);
-
-      int tile = getSmallFontPosition(c);
-      int q = getSmallFontQuadrant(c, false);
-
-      int x = (column + i) * TileManager.HALF_TILE;
-      g2d.drawImage(TileManager.getQuarterTileImage(tile, q), x, 0, null);
-    }
-
-    // Print out the value of a type (100 points, 1 key etc)
-    String t = v.toString().toLowerCase();
-    for (int i = 0; i < t.length(); ++i) {
-      int c = (int) t.charAt(i);
-      c = getAsciiPos(c);
-
-      int tile = getSmallFontPosition(c);
-      int q = getSmallFontQuadrant(c, true);
-
-      int x = (column + i) * TileManager.HALF_TILE;
-      g2d.drawImage(TileManager.getQuarterTileImage(tile, q), x,
-          TileManager.HALF_TILE, null);
-    }
-  }
-
-  protected int getSmallFontPosition(int c) {
-    // Row 0, Col 14 + c(position in alphabet)(q = which top corner the letter
-    // is in) in tile sheet
-    int tile = (0 * 32 + 14) + (c / 2);
-    return tile;
-  }
-
-  protected int getSmallFontQuadrant(int c, boolean isNumber) {
-    // Row 0, Col 14 + c(position in alphabet)(q = which top corner the letter
-    // is in) in tile sheet
-    int q = 0;
-    if (isNumber) {
-      q = (1 - (c % 2)) + 2;
-    } else {
-      q = c % 2;
-    }
-    return q;
-  }
-
-  protected int getAsciiPos(int c) {
-    switch (c) {
-    case 33:
-      // !
-      c = 28;
-      break;
-    case 44:
-      // ,
-      c = 27;
-      break;
-    case 46:
-      // .
-      c = 26;
-      break;
-    case 63:
-      // ?
-      c = 29;
-      break;
-    case 32:
-      // " "
-      c = 30;
-      break;
-    default:
-      if ((c >= 97) && (c <= (97 + 26))) {
-        // letters a to z
-        c -= 97;
-      } else if ((c >= 48) && (c <= (48 + 10))) {
-        // numbers 0 - 9
-        c -= 48;
-      } else c = 29;
-      break;
-    }
-    return c;
-  }
-
   public void renderSimpletextOverlay(Graphics2D g2d, String t, Point coords) {
     int x = (int) coords.getX();
     int y = (int) coords.getY();
@@ -574,9 +671,20 @@ public abstract class GameState {
     }
   }
 
+  // Give a removed bullet back to the pool
+  protected void releaseAmmo(MapObject a) {
+    if (a instanceof Bullet) {
+      sm.getBulletPool().release((Bullet) a);
+    }
+  }
+
   protected void reset() {
+    for (MapObject a : ammo) {
+      releaseAmmo(a);
+    }
     ammo = new ArrayList<MapObject>();
     enemy = new ArrayList<MapObject>();
+    entities.clear();
   }
 
   public abstract void render(Graphics2D g2d);
@@ -3,10 +3,22 @@ package gameState;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.event.KeyEvent;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import audioPlayer.AudioPlayer;
 import game.Game;
+import mapObject.Bullet;
+import mapObject.MapObjectPool;
+import tileMap.CollisionMap;
 
 public class GameStateManager {
 	public static final int LAYER_BACKGROUND = 0;
@@ -24,18 +36,108 @@ public class GameStateManager {
 	public static final int LEVEL_INFO = 97;
 	public static final int LEVEL_THEEND = 98;
 	public static final int LEVEL_LOADING = 99;
+	private static final int NO_STATE = -1;
+
+	// How many files a state is guessed to load, until it has been loaded once
+	private static final int DEFAULT_LOAD_STEPS = 5;
+
+	// How much memory the states that has been left may keep
+	private static final long DEFAULT_CACHE_BUDGET = 32L * 1024 * 1024;
 
 	// Game States container
 	HashMap<Integer, GameState> gameStates;
 	// ArrayList<GameState> gameStates;
 	private int currentGameState;
+	// The current state itself, to skip the map lookup on hot paths. Swapped in
+	// one write.
+	private volatile GameState current;
 	private Game game;
 
+	// Headless, the states are run without a window, sound or rendering (see
+	// HeadlessGame). States are then built on the game thread, and leaving the
+	// game only stops the simulation.
+	private boolean headless;
+	private volatile boolean quit;
+
+	// Number of simulation steps run, and how far the current frame is between
+	// the last step and the next (0.0 - 1.0)
+	private long ticks;
+	private double interpolation;
+
+	// Keys from the key listener (or any other input), applied at the start of
+	// the next step on the game thread
+	private static class KeyInput {
+		private int key;
+		private boolean pressed;
+	}
+	private ConcurrentLinkedQueue<KeyInput> keys = new ConcurrentLinkedQueue<KeyInput>();
+
+	// The random numbers of the simulation, from a seed that is kept so a run
+	// can be replayed
+	private long seed = System.nanoTime();
+	private Random random = new Random(seed);
+
+	// The run being recorded, or the recorded run being played back instead of
+	// the keys (see Replay)
+	private Replay recording;
+	private Replay replaying;
+
+	// States are built on the loader thread while the loading state is shown.
+	// The state asked for is started on the next update, and swapped in by the
+	// game thread when it's done.
+	private Executor loader;
+	private int requestedState = NO_STATE;
+	private int pendingState = NO_STATE;
+	private Future<GameState> pending;
+	private int previousState = NO_STATE;
+
+	// Files loaded so far for the state being built, and how many each state
+	// loaded the last time
+	private AtomicInteger loadSteps = new AtomicInteger();
+	private HashMap<Integer, Integer> expectedLoadSteps = new HashMap<Integer, Integer>();
+
+	// States that has been left, kept to be entered again without rebuilding.
+	// A cached state holds on to the rooms of its manifest.
+	private StateCache stateCache = new StateCache(DEFAULT_CACHE_BUDGET,
+			id -> {
+				AssetManifest m = getManifest(id);
+				loader.execute(() -> m.releaseRooms());
+			});
+
+	// The assets each state needs. The manifest of the current state is held,
+	// and so are the manifests of the states likely to come next, which are
+	// loaded in the background. They are only acquired and released on the
+	// loader thread.
+	private HashMap<Integer, AssetManifest> manifests = new HashMap<Integer, AssetManifest>();
+	private AssetManifest held;
+	private ArrayList<AssetManifest> preloaded = new ArrayList<AssetManifest>();
+
+	// Reused bullets, shared by all states
+	private MapObjectPool<Bullet> bulletPool = new MapObjectPool<Bullet>(() -> new Bullet(this));
+
+	// The HUD and the texts in the large font, shared by all states and only
+	// redrawn when they change
+	private HudLayer hud = new HudLayer();
+	private TextCache textCache = new TextCache();
+
 	public GameStateManager(Game game) {
+		this(game, false);
+	}
+
+	public GameStateManager(Game game, boolean headless) {
 		// This is to be able to access the shake-functionality
 		this.game = game;
+		this.headless = headless;
+		if (headless) {
+			loader = Runnable::run;
+		} else {
+			loader = Executors.newSingleThreadExecutor(r -> {
+				Thread t = new Thread(r, "State loader");
+				t.setDaemon(true);
+				return t;
+			});
+		}
 		// Initiate the player status and inventory manager
-		initAudio();
 		PlayerSave.init(0, 0, 0);
 		gameStates = new HashMap<Integer, GameState>();
 		// gameStates = new ArrayList<GameState>();
@@ -46,31 +148,102 @@ public class GameStateManager {
 		setState(LEVEL_MENU);
 	}
 
-	private void initAudio() {
-		AudioPlayer.load(AudioPlayer.SFX_BOOM);
-		AudioPlayer.load(AudioPlayer.SFX_ENEMYDEATH);
-		AudioPlayer.load(AudioPlayer.SFX_DEATH);
-		AudioPlayer.load(AudioPlayer.SFX_DOOR);
-		AudioPlayer.load(AudioPlayer.SFX_BOSSDEATH);
-		AudioPlayer.load(AudioPlayer.SFX_SELECT);
-		AudioPlayer.load(AudioPlayer.SFX_MENUOPTION);
+	// The sounds every level with a player in it uses
+	private static final int[] LEVEL_SOUNDS = { AudioPlayer.SFX_BOOM,
+			AudioPlayer.SFX_DEATH, AudioPlayer.SFX_DOOR, AudioPlayer.SFX_ENEMYDEATH,
+			AudioPlayer.SFX_SHOOT, AudioPlayer.SFX_SPAWN, AudioPlayer.SFX_SSH_SHORT,
+			AudioPlayer.SFX_PICKUP };
 
-		AudioPlayer.load(AudioPlayer.SFX_SSH);
-		AudioPlayer.load(AudioPlayer.SFX_SSH_SHORT);
-		AudioPlayer.load(AudioPlayer.SFX_FIRE);
-		AudioPlayer.load(AudioPlayer.SFX_FIRE2);
-		AudioPlayer.load(AudioPlayer.SFX_SPAWN);
-		AudioPlayer.load(AudioPlayer.SFX_PICKUP);
-		AudioPlayer.load(AudioPlayer.SFX_BLOPP);
-		AudioPlayer.load(AudioPlayer.SFX_WOEW);
-		AudioPlayer.load(AudioPlayer.SFX_SHOOT);
+	// What each state needs, and which states may come after it
+	public static AssetManifest createManifest(int state) {
+		AssetManifest m = new AssetManifest().addSheet(0);
+		switch (state) {
+		case LEVEL_MENU:
+			return m.addSheet(1)
+					.addSound(AudioPlayer.SFX_SELECT, AudioPlayer.SFX_MENUOPTION,
+							AudioPlayer.MSX_MAIN_MENU)
+					.addRoom("/assets/map/menu/playground.xml",
+							"/assets/map/menu/backgroundbluesky.xml",
+							"/assets/map/menu/backgroundsun.xml",
+							"/assets/map/menu/backgroundclouds.xml")
+					.addNext(LEVEL_1, LEVEL_INFO);
+		case LEVEL_1:
+			return m.addSound(LEVEL_SOUNDS).addSound(AudioPlayer.MSX_OVERWORLD)
+					.addRoom("/assets/map/level1/level1.xml",
+							"/assets/map/level1/backgroundbluesky.xml",
+							"/assets/map/level1/backgroundsun.xml",
+							"/assets/map/level1/backgroundclouds.xml")
+					.addNext(LEVEL_2);
+		case LEVEL_2:
+			return m.addSound(LEVEL_SOUNDS).addSound(AudioPlayer.MSX_OVERWORLD)
+					.addRoom("/assets/map/level2/level2.xml",
+							"/assets/map/level2/backgroundbluesky.xml",
+							"/assets/map/level2/backgroundsun.xml",
+							"/assets/map/level2/backgroundclouds.xml")
+					.addNext(LEVEL_3);
+		case LEVEL_3:
+			return m.addSound(LEVEL_SOUNDS).addSound(AudioPlayer.MSX_OVERWORLD)
+					.addRoom("/assets/map/level3/level3.xml",
+							"/assets/map/level3/backgroundbluesky.xml",
+							"/assets/map/level3/backgroundsun.xml",
+							"/assets/map/level3/backgroundclouds.xml")
+					.addNext(LEVEL_4);
+		case LEVEL_4:
+			return m.addSound(LEVEL_SOUNDS).addSound(AudioPlayer.MSX_UNDERWORLD)
+					.addRoom("/assets/map/level4/level4.xml",
+							"/assets/map/level4/backgroundcave.xml")
+					.addNext(LEVEL_5);
+		case LEVEL_5:
+			return m.addSound(LEVEL_SOUNDS).addSound(AudioPlayer.MSX_UNDERWORLD)
+					.addRoom("/assets/map/level5/level5.xml",
+							"/assets/map/level5/backgroundcave.xml")
+					.addNext(LEVEL_6);
+		case LEVEL_6:
+			return m.addSound(LEVEL_SOUNDS)
+					.addSound(AudioPlayer.SFX_BOSSDEATH, AudioPlayer.MSX_BOSS)
+					.addRoom("/assets/map/level6/level6.xml",
+							"/assets/map/level6/backgroundcave.xml")
+					.addNext(LEVEL_THEEND);
+		case LEVEL_INFO:
+			// The menu music keeps playing
+			return m.addSound(AudioPlayer.MSX_MAIN_MENU)
+					.addRoom("/assets/map/info/backgroundnight.xml")
+					.addNext(LEVEL_MENU);
+		case LEVEL_THEEND:
+			return m.addSound(LEVEL_SOUNDS).addSound(AudioPlayer.MSX_END)
+					.addRoom("/assets/map/theend/theend.xml",
+							"/assets/map/theend/backgroundnight.xml")
+					.addNext(LEVEL_MENU);
+		case LEVEL_LOADING:
+			return m.addRoom("/assets/map/loading/loading.xml");
+		}
+		return m;
+	}
 
-		AudioPlayer.load(AudioPlayer.MSX_OVERWORLD);
-		AudioPlayer.load(AudioPlayer.MSX_BOSS);
+	private AssetManifest getManifest(int state) {
+		AssetManifest m = manifests.get(state);
+		if (m == null) {
+			m = createManifest(state);
+			manifests.put(state, m);
+		}
+		return m;
+	}
 
-		AudioPlayer.load(AudioPlayer.MSX_END);
-		AudioPlayer.load(AudioPlayer.MSX_UNDERWORLD);
-		AudioPlayer.load(AudioPlayer.MSX_MAIN_MENU);
+	// Hold the manifest of the state that was entered, instead of the one that
+	// was left, and load the assets of the states that may come next. Run on
+	// the loader thread.
+	private void holdManifest(AssetManifest manifest, ArrayList<AssetManifest> next) {
+		for (AssetManifest m : next) {
+			m.acquire();
+		}
+		for (AssetManifest m : preloaded) {
+			m.release();
+		}
+		preloaded = next;
+		if (held != null) {
+			held.release();
+		}
+		held = manifest;
 	}
 
 	private void initStates() {
@@ -85,73 +258,363 @@ public class GameStateManager {
 		gameStates.put(LEVEL_THEEND, null);
 		gameStates.put(LEVEL_INFO, null);
 		gameStates.put(LEVEL_LOADING, null);
+		// The loading state is always there, and is never released
+		getManifest(LEVEL_LOADING).acquire();
 		loadState(LEVEL_LOADING);
 	}
 
 	// Call this method do shake the screen
 	public void shakeScreen(){
-		game.shakeScreen();
+		if (game != null) {
+			game.shakeScreen();
+		}
+	}
+
+	public boolean isHeadless() {
+		return headless;
+	}
+
+	// Leave the game. Headless, the simulation is only told to stop.
+	public void exit() {
+		if (headless) {
+			quit = true;
+			return;
+		}
+		System.exit(0);
+	}
+
+	public boolean hasQuit() {
+		return quit;
 	}
 	
 	// call the current states (levels) update/render/key-presses
 	public void update() {
-		gameStates.get(currentGameState).update();
+		++ticks;
+		updateInput();
+		updateLoading();
+		current.update();
+
+		if (recording != null) {
+			recording.addChecksum(checksum());
+		} else if (replaying != null) {
+			replaying.verify(ticks, checksum());
+			if (replaying.getMismatch() == ticks) {
+				System.err.println("Replay differs from the recording at step " + ticks);
+			}
+			// Hand over to the keys when the recording runs out
+			if (replaying.isFinished(ticks + 1)) {
+				System.out.println(replaying.getResult());
+				replaying = null;
+			}
+		}
+	}
+
+	// Let the current state have the keys that came since the last step. A
+	// replay has its recorded keys instead.
+	private void updateInput() {
+		KeyInput k;
+		while ((k = keys.poll()) != null) {
+			if (replaying != null) {
+				continue;
+			}
+			if (recording != null) {
+				recording.add(ticks, k.pressed ? Replay.KEY_PRESSED : Replay.KEY_RELEASED, k.key);
+			}
+			if (k.pressed) {
+				current.keyPressed(k.key);
+			} else {
+				current.keyReleased(k.key);
+			}
+		}
+		if (replaying != null) {
+			int type;
+			while ((type = replaying.peek(ticks)) == Replay.KEY_PRESSED
+					|| type == Replay.KEY_RELEASED) {
+				int key = replaying.take();
+				if (type == Replay.KEY_PRESSED) {
+					current.keyPressed(key);
+				} else {
+					current.keyReleased(key);
+				}
+			}
+		}
+	}
+
+	// Whether the state being built is ready to be swapped in. A replay swaps
+	// it in on the step it was ready on when recorded, waiting for it if it
+	// isn't.
+	private boolean isBuilt() {
+		if (replaying != null) {
+			if (replaying.peek(ticks) != Replay.STATE_BUILT) {
+				return false;
+			}
+			replaying.take();
+			return true;
+		}
+		if (!pending.isDone()) {
+			return false;
+		}
+		if (recording != null) {
+			recording.add(ticks, Replay.STATE_BUILT, pendingState);
+		}
+		return true;
+	}
+
+	// A hash of the current state, PlayerSave and the step (see Replay)
+	public int checksum() {
+		int h = Replay.mix(current.checksum(), ticks);
+		h = Replay.mix(h, currentGameState);
+		h = Replay.mix(h, PlayerSave.get(PlayerSave.PLAYER_KILLCOUNT));
+		h = Replay.mix(h, PlayerSave.get(PlayerSave.PLAYER_DEATHCOUNT));
+		return Replay.mix(h, PlayerSave.get(PlayerSave.PLAYER_SCORE));
+	}
+
+	// Record the run from here on, must be started before the first step
+	public Replay startRecording() {
+		checkNotStarted();
+		recording = new Replay(seed);
+		replaying = null;
+		return recording;
+	}
+
+	public Replay getRecording() {
+		return recording;
+	}
+
+	// Play back a recorded run instead of the keys, from the first step
+	public void startReplay(Replay replay) {
+		checkNotStarted();
+		seed = replay.getSeed();
+		random.setSeed(seed);
+		replaying = replay;
+		recording = null;
+	}
+
+	public boolean isReplaying() {
+		return replaying != null;
+	}
+
+	private void checkNotStarted() {
+		if (ticks != 0) {
+			throw new IllegalStateException("The simulation has already started");
+		}
+	}
+
+	public Random getRandom() {
+		return random;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	// Start building the state that was asked for, and switch to it when it's
+	// ready
+	private void updateLoading() {
+		// A state is built one at a time, a state asked for while another is
+		// built waits for it
+		if (pending != null) {
+			if (!isBuilt()) {
+				return;
+			}
+			GameState state;
+			try {
+				state = pending.get();
+			} catch (InterruptedException | ExecutionException e) {
+				e.printStackTrace();
+				// Try again on this thread, so the error isn't lost
+				state = createState(pendingState);
+			}
+			pending = null;
+			expectedLoadSteps.put(pendingState, loadSteps.get());
+			int id = pendingState;
+			pendingState = NO_STATE;
+			if (requestedState == NO_STATE) {
+				swapState(id, state);
+				return;
+			}
+			// Another state was asked for while this one was built, keep it for
+			// later
+			cacheState(id, state);
+			AssetManifest built = getManifest(id);
+			loader.execute(() -> built.release());
+		}
+
+		if (requestedState != NO_STATE) {
+			final int state = requestedState;
+			requestedState = NO_STATE;
+
+			// A cached state is swapped in right away, its assets are loaded on the
+			// loader thread
+			AssetManifest manifest = getManifest(state);
+			GameState cached = stateCache.take(state);
+			if (cached != null) {
+				loader.execute(() -> {
+					manifest.acquire();
+					manifest.releaseRooms();
+				});
+				swapState(state, cached);
+				return;
+			}
+
+			pendingState = state;
+			loadSteps.set(0);
+			FutureTask<GameState> task = new FutureTask<GameState>(() -> {
+				manifest.acquire();
+				return createState(state);
+			});
+			pending = task;
+			loader.execute(task);
+		}
+	}
+
+	// Make a built state the current one, the state that was left goes to the
+	// cache
+	private void swapState(int id, GameState state) {
+		if (previousState != NO_STATE && previousState != id) {
+			unloadState(previousState);
+		}
+		gameStates.put(id, state);
+		setCurrent(id);
+		state.enter();
+
+		AssetManifest manifest = getManifest(id);
+		ArrayList<AssetManifest> next = new ArrayList<AssetManifest>();
+		for (int n : manifest.getNext()) {
+			next.add(getManifest(n));
+		}
+		loader.execute(() -> holdManifest(manifest, next));
+	}
+
+	public StateCache getStateCache() {
+		return stateCache;
+	}
+
+	public void setStateCacheBudget(long bytes) {
+		stateCache.setBudget(bytes);
+	}
+
+	// Called by the states for every file they load while being built
+	public void loadStepDone() {
+		loadSteps.incrementAndGet();
+	}
+
+	// How far the state being built has come (0.0 - 1.0)
+	public double getLoadProgress() {
+		if (pendingState == NO_STATE && requestedState == NO_STATE) {
+			return 1.0;
+		}
+		int state = pendingState != NO_STATE ? pendingState : requestedState;
+		Integer expected = expectedLoadSteps.get(state);
+		double progress = (double) loadSteps.get()
+				/ (expected != null ? expected : DEFAULT_LOAD_STEPS);
+		return Math.min(progress, 1.0);
 	}
 
 	public void render(Graphics2D graphics) {
-		gameStates.get(currentGameState).render(graphics);
+		render(graphics, 1.0);
+	}
+
+	public void render(Graphics2D graphics, double interpolation) {
+		this.interpolation = interpolation;
+		current.render(graphics);
+	}
+
+	public MapObjectPool<Bullet> getBulletPool() {
+		return bulletPool;
+	}
+
+	public HudLayer getHud() {
+		return hud;
+	}
+
+	public TextCache getTextCache() {
+		return textCache;
+	}
+
+	public long getTicks() {
+		return ticks;
+	}
+
+	public double getInterpolation() {
+		return interpolation;
 	}
 
 	public void keyPressed(KeyEvent key) {
 		if (key.getKeyCode() == KeyEvent.VK_ESCAPE || key.getKeyCode() == KeyEvent.VK_Q) {
-			System.exit(0);
+			exit();
+			return;
 		}
-		gameStates.get(currentGameState).keyPressed(key.getKeyCode());
+		keyPressed(key.getKeyCode());
 	}
 
 	public void keyReleased(KeyEvent key) {
-		gameStates.get(currentGameState).keyReleased(key.getKeyCode());
+		keyReleased(key.getKeyCode());
+	}
+
+	// Keys by their key code, for input that doesn't come from a window. Any
+	// thread may call these, the keys are handled on the next step.
+	public void keyPressed(int keyCode) {
+		addKey(keyCode, true);
+	}
+
+	public void keyReleased(int keyCode) {
+		addKey(keyCode, false);
+	}
+
+	private void addKey(int keyCode, boolean pressed) {
+		KeyInput k = new KeyInput();
+		k.key = keyCode;
+		k.pressed = pressed;
+		keys.add(k);
 	}
 
 	// Load a state to memory
 	private void loadState(int state) {
+		gameStates.put(state, createState(state));
+	}
+
+	// Build a state, called from the loader thread
+	private GameState createState(int state) {
 		switch (state) {
 		case LEVEL_MENU:
-			gameStates.put(state, new StateMainMenu(this));
-			break;
+			return new StateMainMenu(this);
 		case LEVEL_1:
-			gameStates.put(state, new StateLevel1(this));
-			break;
+			return new StateLevel1(this);
 		case LEVEL_2:
-			gameStates.put(state, new StateLevel2(this));
-			break;
+			return new StateLevel2(this);
 		case LEVEL_3:
-			gameStates.put(state, new StateLevel3(this));
-			break;
+			return new StateLevel3(this);
 		case LEVEL_4:
-			gameStates.put(state, new StateLevel4(this));
-			break;
+			return new StateLevel4(this);
 		case LEVEL_5:
-			gameStates.put(state, new StateLevel5(this));
-			break;
+			return new StateLevel5(this);
 		case LEVEL_6:
-			gameStates.put(state, new StateLevel6(this));
-			break;
+			return new StateLevel6(this);
 		case LEVEL_INFO:
-			gameStates.put(state, new StateInfo(this));
-			break;
+			return new StateInfo(this);
 		case LEVEL_THEEND:
-			gameStates.put(state, new StateTheEnd(this));
-			break;
+			return new StateTheEnd(this);
 		case LEVEL_LOADING:
-			gameStates.put(state, new StateLoading(this));
-			break;
+			return new StateLoading(this);
 		}
+		return null;
+	}
+
+	// Keep a state in the cache, along with its rooms
+	private void cacheState(int id, GameState state) {
+		AssetManifest m = getManifest(id);
+		loader.execute(() -> m.acquireRooms());
+		stateCache.put(id, state);
 	}
 
-	// Free resources from a stage
+	// Move a stage out of the active states, into the cache
 	private void unloadState(int state) {
-		if (state != currentGameState) {
+		if (state != currentGameState && state != LEVEL_LOADING) {
+			GameState left = gameStates.get(state);
+			if (left != null) {
+				cacheState(state, left);
+			}
 			gameStates.put(state, null);
 		}
 	}
@@ -164,14 +627,26 @@ public class GameStateManager {
 	// set level (state)
 	public void setState(int state) {
 		if (state != LEVEL_LOADING) {
-			currentGameState = LEVEL_LOADING;
-			loadState(state);
-			int t = currentGameState;
-			unloadState(t);
-			currentGameState = state;
+			if (currentGameState != LEVEL_LOADING && current != null) {
+				previousState = currentGameState;
+				current.exit();
+			}
+			// Show the loading state until the new state is built
+			setCurrent(LEVEL_LOADING);
+			requestedState = state;
 		}
 	}
 
+	private void setCurrent(int state) {
+		currentGameState = state;
+		current = gameStates.get(state);
+	}
+
+	// The tile map of the current level, for tile collision checks
+	public CollisionMap getCollisionMap() {
+		return current.getRoom();
+	}
+
 	// return the width (in tiles) of the current level
 	public int getWidth() {
 		return gameStates.get(currentGameState).getNumTilesWidth();
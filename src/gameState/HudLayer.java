@@ -0,0 +1,116 @@
+package gameState;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import game.Game;
+import tileManager.GlyphTable;
+import tileManager.TileManager;
+
+// The HUD at the top of the screen, kept in one image. An element is only
+// redrawn into it when its value in PlayerSave has changed, most frames the
+// HUD is a single image blit.
+public class HudLayer {
+  // A label with a value under it, or an icon shown while the value isn't 0
+  private class Element {
+    private int column;
+    private String label;
+    private boolean inventory;
+    private int key;
+    private int icon;
+
+    private int value;
+    // How many half tiles the element took up the last time it was drawn
+    private int width;
+
+    public Element(int column, String label, boolean inventory, int key,
+        int icon) {
+      this.column = column;
+      this.label = label;
+      this.inventory = inventory;
+      this.key = key;
+      this.icon = icon;
+    }
+
+    private int read() {
+      if (inventory) {
+        return PlayerSave.has(key) ? 1 : 0;
+      }
+      return PlayerSave.get(key);
+    }
+
+    // If the element shows something else than it did when it was drawn
+    public boolean changed() {
+      return width == 0 || read() != value;
+    }
+
+    public void update(Graphics2D g2d) {
+      value = read();
+
+      // Clear what was there before
+      g2d.setComposite(AlphaComposite.Clear);
+      g2d.fillRect(column * TileManager.HALF_TILE, 0,
+          width * TileManager.HALF_TILE, TileManager.TILE_SIZE);
+      g2d.setComposite(AlphaComposite.SrcOver);
+
+      if (label == null) {
+        if (value != 0) {
+          TileManager.drawTile(g2d, icon, column * TileManager.HALF_TILE, 0);
+        }
+        width = 2;
+        return;
+      }
+
+      // Print out the type of value ("score", "keys" etc) with the value
+      // (100 points, 1 key etc) under it
+      for (int i = 0; i < label.length(); ++i) {
+        GlyphTable.drawSmall(g2d, label.charAt(i),
+            (column + i) * TileManager.HALF_TILE, 0);
+      }
+      GlyphTable.drawSmallNumber(g2d, value, column * TileManager.HALF_TILE,
+          TileManager.HALF_TILE);
+      width = Math.max(label.length(), Integer.toString(value).length());
+    }
+  }
+
+  private BufferedImage image;
+  private Element[] elements;
+  // The tile set the image was drawn with
+  private int set = -1;
+
+  public HudLayer() {
+    elements = new Element[] {
+        new Element(3, "deaths", false, PlayerSave.PLAYER_DEATHCOUNT, 0),
+        new Element(12, "kills", false, PlayerSave.PLAYER_KILLCOUNT, 0),
+        new Element(20, "score", false, PlayerSave.PLAYER_SCORE, 0),
+        new Element(30, "key", true, Game.ACTION_KEY, 0),
+        new Element(34, null, true, Game.ACTION_SLOWFALL, (11 * 32) + 2) };
+  }
+
+  public void render(Graphics2D g2d) {
+    if (image == null || set != TileManager.getTileSet()) {
+      image = TileManager.createCompatibleImage(Game.WIN_W,
+          TileManager.TILE_SIZE);
+      set = TileManager.getTileSet();
+      for (Element e : elements) {
+        e.width = 0;
+      }
+    }
+
+    Graphics2D ig = null;
+    for (Element e : elements) {
+      if (e.changed()) {
+        if (ig == null) {
+          ig = image.createGraphics();
+        }
+        e.update(ig);
+      }
+    }
+    if (ig != null) {
+      ig.dispose();
+    }
+
+    g2d.drawImage(image, 0, 0, null);
+  }
+}
@@ -0,0 +1,212 @@
+package gameState;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+// A recorded run of the game: the seed of its random numbers, every key that
+// was pressed or released and the simulation step it happened on, the steps
+// on which states built in the background were ready, and a checksum of the
+// current state after every step. Played back from the same seed, the steps
+// come out the same, which the checksums tell.
+//
+// File: a header (magic, version, seed, number of events and of steps), the
+// events (steps since the last event, type and value, the numbers as varints)
+// and then the checksums.
+public class Replay {
+  private static final int MAGIC = 0x52504C59; // "RPLY"
+  private static final int VERSION = 1;
+
+  public static final int KEY_PRESSED = 0;
+  public static final int KEY_RELEASED = 1;
+  // The state being built (the value) was ready, and swapped in
+  public static final int STATE_BUILT = 2;
+
+  private static final int INITIAL_CAPACITY = 256;
+
+  private long seed;
+
+  // Events in the order they happened, one array per field
+  private long[] ticks = new long[INITIAL_CAPACITY];
+  private byte[] types = new byte[INITIAL_CAPACITY];
+  private int[] values = new int[INITIAL_CAPACITY];
+  private int count;
+
+  // The checksum after each step, the first step is 1
+  private int[] checksums = new int[INITIAL_CAPACITY * 16];
+  private int steps;
+
+  // Played back, the next event, and the first step that didn't match
+  private int next;
+  private long mismatch = -1;
+
+  public Replay(long seed) {
+    this.seed = seed;
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  public int getEventCount() {
+    return count;
+  }
+
+  public int getSteps() {
+    return steps;
+  }
+
+  // The first step that came out different when played back, -1 if none has
+  public long getMismatch() {
+    return mismatch;
+  }
+
+  public String getResult() {
+    if (mismatch < 0) {
+      return "Replay of " + steps + " steps matched";
+    }
+    return "Replay of " + steps + " steps differed from step " + mismatch;
+  }
+
+  // Played back past the last recorded step
+  public boolean isFinished(long tick) {
+    return tick > steps;
+  }
+
+  // Synchronized with save, which may run on another thread (at exit)
+  synchronized void add(long tick, int type, int value) {
+    if (count == ticks.length) {
+      ticks = Arrays.copyOf(ticks, count * 2);
+      types = Arrays.copyOf(types, count * 2);
+      values = Arrays.copyOf(values, count * 2);
+    }
+    ticks[count] = tick;
+    types[count] = (byte) type;
+    values[count] = value;
+    ++count;
+  }
+
+  synchronized void addChecksum(int checksum) {
+    if (steps == checksums.length) {
+      checksums = Arrays.copyOf(checksums, steps * 2);
+    }
+    checksums[steps++] = checksum;
+  }
+
+  // The type of the next event if it happened on this step, else -1
+  int peek(long tick) {
+    if (next < count && ticks[next] == tick) {
+      return types[next];
+    }
+    return -1;
+  }
+
+  // The value of the next event, and move on to the one after
+  int take() {
+    return values[next++];
+  }
+
+  // Compare the checksum of a played back step with the recorded one
+  boolean verify(long tick, int checksum) {
+    if (tick < 1 || tick > steps || checksums[(int) tick - 1] == checksum) {
+      return true;
+    }
+    if (mismatch < 0) {
+      mismatch = tick;
+    }
+    return false;
+  }
+
+  // Add a value to a checksum
+  public static int mix(int h, int value) {
+    return (h ^ value) * 0x01000193;
+  }
+
+  public static int mix(int h, long value) {
+    return mix(mix(h, (int) value), (int) (value >>> 32));
+  }
+
+  public static int mix(int h, double value) {
+    return mix(h, Double.doubleToLongBits(value));
+  }
+
+  public synchronized boolean save(String fileName) {
+    // Each event takes at most 10 + 1 + 5 bytes
+    ByteBuffer buffer = ByteBuffer.allocate(4 * 4 + 8 + count * 16 + steps * 4);
+    buffer.putInt(MAGIC);
+    buffer.putInt(VERSION);
+    buffer.putLong(seed);
+    buffer.putInt(count);
+    buffer.putInt(steps);
+    long last = 0;
+    for (int i = 0; i < count; ++i) {
+      putVarint(buffer, ticks[i] - last);
+      buffer.put(types[i]);
+      putVarint(buffer, values[i] & 0xFFFFFFFFL);
+      last = ticks[i];
+    }
+    for (int i = 0; i < steps; ++i) {
+      buffer.putInt(checksums[i]);
+    }
+
+    try {
+      Files.write(new File(fileName).toPath(),
+          Arrays.copyOf(buffer.array(), buffer.position()));
+    } catch (IOException e) {
+      e.printStackTrace();
+      return false;
+    }
+    return true;
+  }
+
+  // Read a replay, null if it can't be read
+  public static Replay load(String fileName) {
+    try {
+      ByteBuffer buffer = ByteBuffer
+          .wrap(Files.readAllBytes(new File(fileName).toPath()));
+      if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+        System.err.println(fileName + " is not a replay");
+        return null;
+      }
+      Replay replay = new Replay(buffer.getLong());
+      int events = buffer.getInt();
+      int steps = buffer.getInt();
+      long tick = 0;
+      for (int i = 0; i < events; ++i) {
+        tick += getVarint(buffer);
+        int type = buffer.get();
+        replay.add(tick, type, (int) getVarint(buffer));
+      }
+      for (int i = 0; i < steps; ++i) {
+        replay.addChecksum(buffer.getInt());
+      }
+      return replay;
+    } catch (IOException | RuntimeException e) {
+      e.printStackTrace();
+    }
+    return null;
+  }
+
+  // 7 bits at a time, lowest first, the high bit set on all but the last
+  private static void putVarint(ByteBuffer buffer, long value) {
+    while ((value & ~0x7FL) != 0) {
+      buffer.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+
+  private static long getVarint(ByteBuffer buffer) {
+    long value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = buffer.get();
+      value |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+}
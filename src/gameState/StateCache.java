@@ -0,0 +1,102 @@
+package gameState;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+// Keeps states that has been left, so they can be entered again without
+// being rebuilt. When the states take up more than the budget, the ones that
+// were used the longest time ago are thrown away, and 'evicted' is told
+// which state was thrown away.
+public class StateCache {
+  // Ordered from the least to the most recently used
+  private LinkedHashMap<Integer, GameState> states = new LinkedHashMap<Integer, GameState>(
+      16, 0.75f, true);
+  private LinkedHashMap<Integer, Long> sizes = new LinkedHashMap<Integer, Long>();
+  private long budget;
+  private long used;
+  private IntConsumer evicted;
+
+  // Statistics
+  private int hits;
+  private int misses;
+  private int evictions;
+
+  public StateCache(long budget, IntConsumer evicted) {
+    this.budget = budget;
+    this.evicted = evicted;
+  }
+
+  // Take a state out of the cache, null if it's not there
+  public GameState take(int id) {
+    GameState state = states.remove(id);
+    if (state == null) {
+      ++misses;
+      return null;
+    }
+    ++hits;
+    used -= sizes.remove(id);
+    return state;
+  }
+
+  public void put(int id, GameState state) {
+    if (states.remove(id) != null) {
+      used -= sizes.remove(id);
+      evicted.accept(id);
+    }
+    long size = state.getMemoryEstimate();
+    if (size > budget) {
+      ++evictions;
+      evicted.accept(id);
+      return;
+    }
+    states.put(id, state);
+    sizes.put(id, size);
+    used += size;
+    evict();
+  }
+
+  public void setBudget(long budget) {
+    this.budget = budget;
+    evict();
+  }
+
+  public long getBudget() {
+    return budget;
+  }
+
+  public long getUsed() {
+    return used;
+  }
+
+  public int size() {
+    return states.size();
+  }
+
+  public void clear() {
+    for (int id : states.keySet()) {
+      evicted.accept(id);
+    }
+    states.clear();
+    sizes.clear();
+    used = 0;
+  }
+
+  private void evict() {
+    Iterator<Map.Entry<Integer, GameState>> it = states.entrySet().iterator();
+    while (used > budget && it.hasNext()) {
+      int id = it.next().getKey();
+      it.remove();
+      used -= sizes.remove(id);
+      ++evictions;
+      evicted.accept(id);
+    }
+  }
+
+  public String toString() {
+    return states.size() + " states, " + used / 1024 + " of " + budget / 1024
+        + " kB, hits " + hits + ", misses " + misses + ", evictions "
+        + evictions;
+  }
+}
@@ -8,6 +8,7 @@ import java.util.ArrayList;
 
 import audioPlayer.AudioPlayer;
 import background.Background;
+import entity.Mushroom;
 import game.Game;
 import mapObject.*;
 
@@ -20,14 +21,13 @@ public class StateLevel1 extends GameState {
   }
 
   private void initResources() {
-    PlayerSave.hardReset();
     initTileMap();
     initLayers();
     initMapObjects();
-    initAudio();
   }
 
-  private void initAudio() {
+  @Override
+  protected void startMusic() {
     AudioPlayer.playLoop(AudioPlayer.MSX_OVERWORLD, 0);
   }
 
@@ -62,15 +62,18 @@ public class StateLevel1 extends GameState {
     mapObjects.get(mapObjects.size() - 1).setTeleport(GameStateManager.LEVEL_2);
 
     // Add some enemys and start their movements
-    enemy.add(new Mushroom(sm));
-    enemy.get(enemy.size() - 1).setSpawnPoint(new Point(13, 14));
-    enemy.get(enemy.size() - 1).keyLeft(true);
+    Mushroom.create(entities.getStore(), new Point(13, 14), false);
 
     // The player, set spawn point
     player = new Player(sm);
     player.setSpawnPoint(new Point(1, 11));
+  }
 
-    // Give the player a key so the teleport (door) can be used
+  // Entering the first level starts a new game, and the player has a key so
+  // the teleport (door) can be used
+  @Override
+  protected void start() {
+    PlayerSave.hardReset();
     PlayerSave.add(Game.ACTION_KEY);
   }
 
@@ -8,6 +8,7 @@ import java.util.ArrayList;
 
 import audioPlayer.AudioPlayer;
 import background.Background;
+import entity.Mushroom;
 import game.Game;
 import mapObject.*;
 
@@ -23,10 +24,6 @@ public class StateLevel2 extends GameState {
     initTileMap();
     initLayers();
     initMapObjects();
-    initAudio();
-  }
-
-  private void initAudio() {
   }
 
   private void initTileMap() {
@@ -88,15 +85,9 @@ public class StateLevel2 extends GameState {
     mapObjects.get(mapObjects.size() - 1).setActionOnCollision(Game.ACTION_DAMAGE);
 
     // Add some enemys and define their movements and spawn points
-    enemy.add(new Mushroom(sm));
-    enemy.get(enemy.size() - 1).setSpawnPoint(new Point(1, 1));
-    enemy.get(enemy.size() - 1).keyRight(true);
-    enemy.add(new Mushroom(sm));
-    enemy.get(enemy.size() - 1).setSpawnPoint(new Point(4, 4));
-    enemy.get(enemy.size() - 1).keyLeft(true);
-    enemy.add(new Mushroom(sm));
-    enemy.get(enemy.size() - 1).setSpawnPoint(new Point(8, 10));
-    enemy.get(enemy.size() - 1).keyRight(true);
+    Mushroom.create(entities.getStore(), new Point(1, 1), true);
+    Mushroom.create(entities.getStore(), new Point(4, 4), false);
+    Mushroom.create(entities.getStore(), new Point(8, 10), true);
 
     // The player
     player = new Player(sm);
@@ -8,6 +8,7 @@ import java.util.ArrayList;
 
 import audioPlayer.AudioPlayer;
 import background.Background;
+import entity.Mushroom;
 import game.Game;
 import mapObject.*;
 
@@ -23,10 +24,6 @@ public class StateLevel3 extends GameState {
     initTileMap();
     initLayers();
     initMapObjects();
-    initAudio();
-  }
-
-  private void initAudio() {
   }
 
   private void initTileMap() {
@@ -66,17 +63,10 @@ public class StateLevel3 extends GameState {
     mapObjects.get(mapObjects.size() - 1).setActionOnCollision(Game.ACTION_KEY);
 
     // Add some enemies and define their movements and spawn points
-    enemy.add(new Mushroom(sm));
-    enemy.get(enemy.size() - 1).setSpawnPoint(new Point(1, 7));
-    enemy.add(new Mushroom(sm));
-    enemy.get(enemy.size() - 1).setSpawnPoint(new Point(3, 12));
-    enemy.get(enemy.size() - 1).keyRight(true);
-    enemy.add(new Mushroom(sm));
-    enemy.get(enemy.size() - 1).setSpawnPoint(new Point(4, 4));
-    enemy.get(enemy.size() - 1).keyRight(true);
-    enemy.add(new Mushroom(sm));
-    enemy.get(enemy.size() - 1).setSpawnPoint(new Point(8, 8));
-    enemy.get(enemy.size() - 1).keyRight(true);
+    Mushroom.create(entities.getStore(), new Point(1, 7));
+    Mushroom.create(entities.getStore(), new Point(3, 12), true);
+    Mushroom.create(entities.getStore(), new Point(4, 4), true);
+    Mushroom.create(entities.getStore(), new Point(8, 8), true);
 
     enemy.add(new Tank(sm));
     enemy.get(enemy.size() - 1).setSpawnPoint(new Point(8, 8));
@@ -7,6 +7,7 @@ import java.util.ArrayList;
 
 import audioPlayer.AudioPlayer;
 import background.Background;
+import entity.Mushroom;
 import game.Game;
 import mapObject.*;
 
@@ -22,10 +23,10 @@ public class StateLevel4 extends GameState {
     initTileMap();
     initLayers();
     initMapObjects();
-    initAudio();
   }
 
-  private void initAudio() {
+  @Override
+  protected void startMusic() {
     AudioPlayer.playLoop(AudioPlayer.MSX_UNDERWORLD, 0);
   }
 
@@ -60,9 +61,7 @@ public class StateLevel4 extends GameState {
     mapObjects.get(mapObjects.size() - 1).setActionOnCollision(Game.ACTION_DAMAGE);
 
     // Add some enemies and define their movements and spawn points
-    enemy.add(new Mushroom(sm));
-    enemy.get(enemy.size() - 1).setSpawnPoint(new Point(8, 10));
-    enemy.get(enemy.size() - 1).keyLeft(true);
+    Mushroom.create(entities.getStore(), new Point(8, 10), false);
     enemy.add(new Tank(sm));
     enemy.get(enemy.size() - 1).setSpawnPoint(new Point(6, 6));
     enemy.get(enemy.size() - 1).keyRight(true);
@@ -72,8 +71,7 @@ public class StateLevel4 extends GameState {
     enemy.add(new Tank(sm));
     enemy.get(enemy.size() - 1).setSpawnPoint(new Point(8, 12));
     enemy.get(enemy.size() - 1).keyLeft(true);
-    enemy.add(new Mushroom(sm));
-    enemy.get(enemy.size() - 1).setSpawnPoint(new Point(1, 6));
+    Mushroom.create(entities.getStore(), new Point(1, 6));
 
     // The player
     player = new Player(sm);
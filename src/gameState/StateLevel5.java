@@ -7,6 +7,7 @@ import java.util.ArrayList;
 
 import audioPlayer.AudioPlayer;
 import background.Background;
+import entity.Mushroom;
 import game.Game;
 import mapObject.*;
 
@@ -22,10 +23,6 @@ public class StateLevel5 extends GameState {
     initTileMap();
     initLayers();
     initMapObjects();
-    initAudio();
-  }
-
-  private void initAudio() {
   }
 
   private void initTileMap() {
@@ -63,11 +60,8 @@ public class StateLevel5 extends GameState {
 
 
     // Add some enemies and define their movements and spawn points
-    enemy.add(new Mushroom(sm));
-    enemy.get(enemy.size() - 1).setSpawnPoint(new Point(3, 3));
-    enemy.add(new Mushroom(sm));
-    enemy.get(enemy.size() - 1).setSpawnPoint(new Point(3, 3));
-    enemy.get(enemy.size() - 1).keyLeft(true);
+    Mushroom.create(entities.getStore(), new Point(3, 3));
+    Mushroom.create(entities.getStore(), new Point(3, 3), false);
     enemy.add(new Tank(sm));
     enemy.get(enemy.size() - 1).setSpawnPoint(new Point(14, 5));
     enemy.get(enemy.size() - 1).keyRight(true);
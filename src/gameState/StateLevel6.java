@@ -3,16 +3,16 @@ package gameState;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.event.KeyEvent;
-import java.awt.geom.Point2D;
 import java.util.ArrayList;
 
 import audioPlayer.AudioPlayer;
 import background.Background;
 import game.Game;
 import mapObject.*;
-import tileManager.TileManager;
 
 public class StateLevel6 extends GameState {
+  // Kept apart, the boss is removed from the enemies when it's dead
+  private MapObject boss;
 
   public StateLevel6(GameStateManager sm) {
     super(sm);
@@ -24,10 +24,10 @@ public class StateLevel6 extends GameState {
     initTileMap();
     initLayers();
     initMapObjects();
-    initAudio();
   }
 
-  private void initAudio() {
+  @Override
+  protected void startMusic() {
     AudioPlayer.playLoop(AudioPlayer.MSX_BOSS, 0);
   }
 
@@ -47,10 +47,11 @@ public class StateLevel6 extends GameState {
     mapObjects = new ArrayList<MapObject>();
 
     // The boss
-    enemy.add(new SparklyBoss(sm));
-    enemy.get(enemy.size() - 1).setSpawnPoint(new Point(10, 8));
-    enemy.get(enemy.size() - 1).keyLeft(true);
-    enemy.get(enemy.size() - 1).keyUp(true);
+    boss = new SparklyBoss(sm);
+    boss.setSpawnPoint(new Point(10, 8));
+    boss.keyLeft(true);
+    boss.keyUp(true);
+    enemy.add(boss);
 
     // The player
     player = new Player(sm);
@@ -80,77 +81,11 @@ public class StateLevel6 extends GameState {
   }
 
   @Override
-  protected void updateMapObjects() {
-
-    // Map Objects
-    for (MapObject mo : mapObjects) {
-      mo.update();
-      mapObjectInteraction(mo);
-    }
-
-    // Map Objects
-    for (MapObject e : enemy) {
-      e.update();
-    }
-
-    // Player
-    player.update();
-    // Update each bullet
-    for (MapObject bullet : ammo) {
-      bullet.update();
-    }
-
-    if (player.didShoot()) {
-      int bulletDisplacement = -TileManager.HALF_TILE / 2;
-      if (player.facingRight()) {
-        bulletDisplacement = (TileManager.HALF_TILE / 2);
-      }
-      ammo.add(new Bullet(sm,
-          new Point2D.Double(player.getCoords().getX() + bulletDisplacement,
-              player.getCoords().getY() + TileManager.HALF_TILE / 2 / 2),
-          player.facingRight()));
-      sm.shakeScreen();
-    }
-
-    // Resolve collisions
-    for (MapObject e : enemy) {
-      for (MapObject a : ammo) {
-        if (a.isAlive() && e.isAlive()) {
-          if (a.intersect(e)) {
-            AudioPlayer.play(AudioPlayer.SFX_BOOM);
-            a.kill();
-            if (e.kill()) {
-              AudioPlayer.play(AudioPlayer.SFX_ENEMYDEATH);
-              PlayerSave.addPoint(PlayerSave.PLAYER_KILLCOUNT);
-              PlayerSave.addPoint(PlayerSave.PLAYER_SCORE, e.getScore());
-              AudioPlayer.stop(AudioPlayer.MSX_BOSS);
-              AudioPlayer.play(AudioPlayer.SFX_BOSSDEATH);
-              spawnDoorAndKey();
-            }
-          }
-        }
-      }
-
-      if (player.intersect(e) && e.isAlive() && player.isAlive()) {
-        player.kill();
-        PlayerSave.addPoint(PlayerSave.PLAYER_DEATHCOUNT);
-        AudioPlayer.play(AudioPlayer.SFX_DEATH);
-      }
-    }
-
-    // Remove bullets, enemies and map objects that has remove tag set
-    // Some enemies will not be removed, so the dead will stack up on screen
-    for (int i = 0; i < ammo.size(); ++i) {
-      if (ammo.get(i).timeToRemove()) {
-        ammo.remove(i);
-      }
-    }
-
-    for (int i = 0; i < mapObjects.size(); ++i) {
-      if (mapObjects.get(i).timeToRemove()) {
-        mapObjects.remove(i);
-      }
-    }
+  protected void enemyKilled(MapObject e) {
+    super.enemyKilled(e);
+    AudioPlayer.stop(AudioPlayer.MSX_BOSS);
+    AudioPlayer.play(AudioPlayer.SFX_BOSSDEATH);
+    spawnDoorAndKey();
   }
 
   private void spawnDoorAndKey() {
@@ -181,6 +116,9 @@ public class StateLevel6 extends GameState {
         e.render(g2d);
       }
     }
+
+    // Entities
+    entities.render(g2d, sm.getInterpolation());
     
     // Player
     player.render(g2d);
@@ -206,7 +144,7 @@ public class StateLevel6 extends GameState {
     renderPlaygroundsFront(g2d);
     renderForegrounds(g2d);
     renderHud(g2d);
-    renderBossHp(g2d, enemy.get(0));
+    renderBossHp(g2d, boss);
   }
 
   public void keyPressed(int key) {
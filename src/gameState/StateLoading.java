@@ -1,7 +1,11 @@
 package gameState;
 
+import java.awt.Color;
 import java.awt.Graphics2D;
 
+import game.Game;
+import tileManager.TileManager;
+
 public class StateLoading extends GameState {
   public StateLoading(GameStateManager sm) {
     super(sm);
@@ -22,6 +26,18 @@ public class StateLoading extends GameState {
 
   public void render(Graphics2D g2d) {
     renderPlayground(g2d);
+    renderProgress(g2d);
+  }
+
+  // A bar showing how much of the next state that has been loaded
+  private void renderProgress(Graphics2D g2d) {
+    int w = Game.WIN_W / 2;
+    int x = (Game.WIN_W - w) / 2;
+    int y = Game.WIN_H - TileManager.TILE_SIZE * 2;
+    g2d.setColor(Color.DARK_GRAY);
+    g2d.fillRect(x, y, w, 2);
+    g2d.setColor(Color.WHITE);
+    g2d.fillRect(x, y, (int) (w * sm.getLoadProgress()), 2);
   }
 
   public void keyPressed(int key) {
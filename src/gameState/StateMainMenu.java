@@ -9,6 +9,7 @@ import java.util.ArrayList;
 
 import audioPlayer.AudioPlayer;
 import background.Background;
+import game.Game;
 import mapObject.Animation;
 import tileManager.TileManager;
 
@@ -17,6 +18,13 @@ public class StateMainMenu extends GameState {
   private int selectedOption;
   private Animation marker;
 
+  // The option that was chosen, acted on when the select sound has played
+  // (700 ms). Counted in steps, so the game keeps running meanwhile and a
+  // replay leaves the menu on the same step.
+  private static final int SELECT_DELAY = Game.UPDATES_PER_SECOND * 700 / 1000;
+  private Option chosen;
+  private int chosenTimer;
+
   public class Option {
 
     private int id;
@@ -50,6 +58,10 @@ public class StateMainMenu extends GameState {
     super(sm);
     // Initiate resources
     initResources();
+  }
+
+  @Override
+  protected void startMusic() {
 //    AudioPlayer.load(AudioPlayer.MSX_MAIN_MENU);
     AudioPlayer.playLoop(AudioPlayer.MSX_MAIN_MENU, 0);
   }
@@ -84,15 +96,21 @@ public class StateMainMenu extends GameState {
     options.add(new Option(1, "START GAME", GameStateManager.LEVEL_1));
     options.add(new Option(2, "EXIT  GAME", 0));
     selectedOption = 1;
+    chosen = null;
     marker = new Animation(2, 5);
-    marker.setDelayLimit(15);
+    // Counted in steps. It was 15 when it stepped on each of the two markers
+    // drawn, a frame every 7.5 steps.
+    marker.setDelayLimit(8);
   }
 
+  // The layers are kept, only the menu itself starts over
   public void reset() {
-    initResources();
+    initOptions();
   }
 
   public void update() {
+    marker.update();
+    updateChosen();
     updateBackground();
     updatePlaygroundBack();
     updatePlaygroundFront();
@@ -113,10 +131,10 @@ public class StateMainMenu extends GameState {
       renderTextOverlay(g2d, option.getText(), new Point(x, y), 10);
 
       if (selectedOption == yOffset) {
-        g2d.drawImage(TileManager.getTileImage(marker.getFrame()),
-            x1 * TileManager.TILE_SIZE, y * TileManager.TILE_SIZE, null);
-        g2d.drawImage(TileManager.getTileImage(marker.getFrame()),
-            x2 * TileManager.TILE_SIZE, y * TileManager.TILE_SIZE, null);
+        TileManager.drawTile(g2d, marker.getFrame(),
+            x1 * TileManager.TILE_SIZE, y * TileManager.TILE_SIZE);
+        TileManager.drawTile(g2d, marker.getFrame(),
+            x2 * TileManager.TILE_SIZE, y * TileManager.TILE_SIZE);
       }
       ++yOffset;
     }
@@ -132,34 +150,31 @@ public class StateMainMenu extends GameState {
   }
 
   private void selectOption() {
+    if (chosen != null) {
+      return;
+    }
+    chosen = options.get(selectedOption);
     // Start the game
-    for (int id = 0; id < options.size(); ++id) {
-      if (selectedOption == id) {
-        if (options.get(selectedOption).getId() == 2) {
-          try {
-            AudioPlayer.play(AudioPlayer.SFX_SELECT);
-            // Here be a delay for some fancy effect, like fade out or something
-            Thread.sleep(700);
-          } catch (InterruptedException e) {
-            e.printStackTrace();
-          }
-          System.exit(0);
-        }
-        if (id != 0) {
-          AudioPlayer.stop(AudioPlayer.MSX_MAIN_MENU);
-//          AudioPlayer.unload(AudioPlayer.MSX_MAIN_MENU);
-        }
-        try {
-          AudioPlayer.play(AudioPlayer.SFX_SELECT);
-          // Here be a delay for some fancy effect, like fade out or something
-          Thread.sleep(700);
-        } catch (InterruptedException e) {
-          e.printStackTrace();
-        }
-        sm.setState(options.get(selectedOption).getNextState());
-      }
+    if (chosen.getId() == 1) {
+      AudioPlayer.stop(AudioPlayer.MSX_MAIN_MENU);
+//      AudioPlayer.unload(AudioPlayer.MSX_MAIN_MENU);
     }
+    AudioPlayer.play(AudioPlayer.SFX_SELECT);
+    // Here be a delay for some fancy effect, like fade out or something
+    chosenTimer = SELECT_DELAY;
+  }
 
+  private void updateChosen() {
+    if (chosen == null || --chosenTimer > 0) {
+      return;
+    }
+    Option option = chosen;
+    chosen = null;
+    if (option.getId() == 2) {
+      sm.exit();
+    } else {
+      sm.setState(option.getNextState());
+    }
   }
 
   private void nextOption() {
@@ -179,6 +194,10 @@ public class StateMainMenu extends GameState {
   }
 
   public void keyPressed(int key) {
+    // The menu is left as soon as the select sound has played
+    if (chosen != null) {
+      return;
+    }
     if (key == KeyEvent.VK_DOWN) {
       nextOption();
     }
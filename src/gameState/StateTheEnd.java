@@ -8,6 +8,7 @@ import java.util.ArrayList;
 
 import audioPlayer.AudioPlayer;
 import background.Background;
+import entity.Mushroom;
 import game.Game;
 import mapObject.*;
 
@@ -25,13 +26,13 @@ public class StateTheEnd extends GameState {
   }
 
   private void initResources() {
-    initAudio();
     initTileMap();
     initLayers();
     initMapObjects();
   }
 
-  private void initAudio() {
+  @Override
+  protected void startMusic() {
 //    AudioPlayer.load(AudioPlayer.MSX_END);
     AudioPlayer.playLoop(AudioPlayer.MSX_END, 0);
   }
@@ -72,9 +73,7 @@ public class StateTheEnd extends GameState {
     player.setSpawnPoint(new Point(2, 13));
 
     // Add some enemies and define their movements and spawn points
-    enemy.add(new Mushroom(sm));
-    enemy.get(enemy.size() - 1).setSpawnPoint(new Point(12, 6));
-    enemy.get(enemy.size() - 1).keyLeft(true);
+    Mushroom.create(entities.getStore(), new Point(12, 6), false);
 
     enemy.add(new Tank(sm));
     enemy.get(enemy.size() - 1).setSpawnPoint(new Point(12, 8));
@@ -86,6 +85,13 @@ public class StateTheEnd extends GameState {
 
   }
 
+  @Override
+  protected void restart() {
+    super.restart();
+    timerPage = 0;
+    timerCounter = 0;
+  }
+
   public void reset() {
     super.reset();
     ammo = new ArrayList<MapObject>();
@@ -106,6 +112,9 @@ public class StateTheEnd extends GameState {
     updatePlaygroundBack();
     updatePlaygroundFront();
     updateForeground();
+    // The objects only stand on show, but they still animate
+    animateMapObjects();
+    nextPage(false);
   }
 
   public void render(Graphics2D g2d) {
@@ -137,7 +146,6 @@ public class StateTheEnd extends GameState {
     default:
       break;
     }
-    nextPage(false);
   }
 
   private void nextPage(boolean force) {
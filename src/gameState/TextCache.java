@@ -0,0 +1,61 @@
+package gameState;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+
+import tileManager.GlyphTable;
+import tileManager.TileManager;
+
+// Text in the large font, drawn into images the first time it's shown and
+// blitted from then on. The texts shown are few and don't change, so the
+// images are kept until there are too many of them.
+public class TextCache {
+  private static final int MAX_TEXTS = 64;
+
+  // Images by the number of columns the text is wrapped at, then the text
+  private HashMap<Integer, HashMap<String, BufferedImage>> texts = new HashMap<Integer, HashMap<String, BufferedImage>>();
+  private int size;
+  // The tile set the images were drawn with
+  private int set = -1;
+
+  public BufferedImage get(String s, int columns) {
+    if (set != TileManager.getTileSet() || size >= MAX_TEXTS) {
+      clear();
+      set = TileManager.getTileSet();
+    }
+
+    HashMap<String, BufferedImage> byText = texts.get(columns);
+    if (byText == null) {
+      byText = new HashMap<String, BufferedImage>();
+      texts.put(columns, byText);
+    }
+    BufferedImage image = byText.get(s);
+    if (image == null) {
+      image = draw(s, columns);
+      byText.put(s, image);
+      ++size;
+    }
+    return image;
+  }
+
+  private BufferedImage draw(String s, int columns) {
+    int lines = Math.max(1, (s.length() + columns - 1) / columns);
+    int width = Math.max(1, Math.min(s.length(), columns));
+    BufferedImage image = TileManager.createCompatibleImage(
+        width * TileManager.TILE_SIZE, lines * TileManager.TILE_SIZE);
+    Graphics2D g2d = image.createGraphics();
+    for (int i = 0; i < s.length(); ++i) {
+      GlyphTable.drawLarge(g2d, s.charAt(i),
+          (i % columns) * TileManager.TILE_SIZE,
+          (i / columns) * TileManager.TILE_SIZE);
+    }
+    g2d.dispose();
+    return image;
+  }
+
+  public void clear() {
+    texts.clear();
+    size = 0;
+  }
+}
@@ -0,0 +1,115 @@
+package ioManager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+
+import tileMap.RoomMap;
+
+// Rooms that are loaded through here are kept and shared between everything
+// that loads them. Rooms are told apart by a hash of their file, so copies of
+// the same file (the same background in several levels) are only parsed
+// once. Shared rooms are read only, anyone that wants to change one has to
+// copy() it first.
+public class AssetRegistry {
+  // File name -> room, and content hash -> room
+  private static HashMap<String, RoomMap> byName = new HashMap<String, RoomMap>();
+  private static HashMap<String, RoomMap> byHash = new HashMap<String, RoomMap>();
+
+  // Statistics
+  private static int nameHits;
+  private static int hashHits;
+  private static int parsed;
+
+  // Files are hashed and parsed outside of the lock, so several rooms can be
+  // loaded at the same time
+  public static RoomMap getRoom(String fileName) {
+    synchronized (AssetRegistry.class) {
+      RoomMap room = byName.get(fileName);
+      if (room != null) {
+        ++nameHits;
+        return room;
+      }
+    }
+
+    IoManager io = new IoManager(fileName);
+    String hash = hash(io);
+    if (hash != null) {
+      synchronized (AssetRegistry.class) {
+        RoomMap room = byHash.get(hash);
+        if (room != null) {
+          ++hashHits;
+          byName.put(fileName, room);
+          return room;
+        }
+      }
+    }
+
+    if (!io.load()) {
+      return null;
+    }
+    RoomMap room = io.getRoom();
+    synchronized (AssetRegistry.class) {
+      // Someone else may have loaded the same file in the meantime
+      RoomMap loaded = byName.get(fileName);
+      if (loaded == null && hash != null) {
+        loaded = byHash.get(hash);
+      }
+      if (loaded != null) {
+        byName.put(fileName, loaded);
+        return loaded;
+      }
+      ++parsed;
+      room.markShared();
+      byName.put(fileName, room);
+      if (hash != null) {
+        byHash.put(hash, room);
+      }
+      return room;
+    }
+  }
+
+  // Forget a room, the next one to load it gets it from the file again. The
+  // room stays valid for those using it.
+  public static synchronized void release(String fileName) {
+    RoomMap room = byName.remove(fileName);
+    if (room != null && !byName.containsValue(room)) {
+      byHash.values().remove(room);
+    }
+  }
+
+  // Forget all rooms, the ones in use stay valid
+  public static synchronized void clear() {
+    byName.clear();
+    byHash.clear();
+  }
+
+  public static synchronized int size() {
+    return byHash.size();
+  }
+
+  public static synchronized String getStatistics() {
+    return byHash.size() + " rooms, parsed " + parsed + ", name hits "
+        + nameHits + ", content hits " + hashHits;
+  }
+
+  // The hash of the file the room would be loaded from, null if it can't be
+  // read (the room is then loaded without being shared by content)
+  private static String hash(IoManager io) {
+    try {
+      ByteBuffer data = io.mapFile(io.getSourceFileName());
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(data);
+      StringBuilder hex = new StringBuilder();
+      for (byte b : digest.digest()) {
+        hex.append(String.format("%02x", b));
+      }
+      return hex.toString();
+    } catch (IOException | NoSuchAlgorithmException e) {
+      e.printStackTrace();
+      return null;
+    }
+  }
+}
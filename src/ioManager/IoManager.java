@@ -1,37 +1,67 @@
 package ioManager;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
 import tileMap.RoomMap;
 
-import javax.xml.transform.*;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-
 public class IoManager implements Serializable {
   private static final long serialVersionUID = 2;
 
+  // Binary rooms: a header (magic, version, columns, rows, name, info)
+  // followed by the image ids, types and sets of all tiles, row by row
+  public static final String BINARY_EXTENSION = ".room";
+  public static final String XML_EXTENSION = ".xml";
+  private static final int BINARY_MAGIC = 0x524F4F4D; // "ROOM"
+  private static final int BINARY_VERSION = 1;
+
+  // How xml rooms are read. The streaming parser reads the file in one pass
+  // without building a document, the DOM parser is the old way.
+  public static final int PARSER_STREAM = 0;
+  public static final int PARSER_DOM = 1;
+  private static int xmlParser = PARSER_STREAM;
+
   private RoomMap roomMap;
   private String fileName;
 
   private InputStream is;
-  private OutputStream os;
   
   // private final String encoding = "UTF-8";
 
@@ -49,19 +79,19 @@ public class IoManager implements Serializable {
     this.fileName = fileName;
   }
 
+  // Rooms are looked up among the resources first, then on disk (the editor
+  // saves its rooms to the working directory)
   private void initInputFile(){
     is = getClass().getResourceAsStream(fileName);
-  }
-  
-  private void initOutputFile(){
-    try {
-      File file = new File(fileName);
-      os = new FileOutputStream(file);
-    } catch (FileNotFoundException e) {
-      e.printStackTrace();
+    if (is == null) {
+      try {
+        is = new FileInputStream(fileName);
+      } catch (FileNotFoundException e) {
+        e.printStackTrace();
+      }
     }
   }
-
+  
     public void setFileName(String fileName) {
     this.fileName = fileName;
   }
@@ -70,134 +100,327 @@ public class IoManager implements Serializable {
     return fileName;
   }
 
-  public boolean save() {
-    if (fileName != null) {
-      factory = DocumentBuilderFactory.newInstance();
-      factory.setNamespaceAware(true);
-      factory.setValidating(false);
-      saveRoom();
+  // Saves run one at a time on this thread, in the order they were asked for
+  private static ExecutorService saver = Executors.newSingleThreadExecutor(r -> {
+    Thread t = new Thread(r, "IoManager saver");
+    t.setDaemon(true);
+    return t;
+  });
 
-      return true;
-    } else {
+  public boolean save() {
+    if (fileName == null || roomMap == null) {
       return false;
     }
+    if (fileName.endsWith(BINARY_EXTENSION)) {
+      return saveBinary();
+    }
+    if (!saveRoom()) {
+      return false;
+    }
+    // Keep the binary room that load() would find up to date, written after
+    // the xml so it's the newer of the two
+    File binary = findFile(getBinaryFileName(fileName));
+    if (binary != null) {
+      return new IoManager(roomMap, binary.getPath()).saveBinary();
+    }
+    return true;
+  }
+
+  // Save on a background thread. The room is copied first, so it can be
+  // edited right away. done is called on the saving thread when it's finished.
+  public Future<Boolean> saveInBackground(Consumer<Boolean> done) {
+    final IoManager snapshot = new IoManager(
+        (roomMap != null) ? roomMap.copy() : null, fileName);
+    return saver.submit(() -> {
+      boolean saved = snapshot.save();
+      if (done != null) {
+        done.accept(saved);
+      }
+      return saved;
+    });
   }
 
+  // Write the room as xml, element by element, to a temporary file that
+  // replaces the real one when it's complete
   private boolean saveRoom() {
+    Path file = new File(fileName).getAbsoluteFile().toPath();
+    Path temp = null;
     try {
-      builder = factory.newDocumentBuilder();
-      document = builder.newDocument();
-      if (roomMap != null) {
-        // <room>
-        // root - what type of xml-file is it
-        Element eRoot = document.createElement("room");
-        document.appendChild(eRoot);
-
-        // <attributes>
-        // information about the room
-        Element eInfo = document.createElement("information");
-        eRoot.appendChild(eInfo);
-
-        // <name>
-        // name
-        Element eName = document.createElement("name");
-        eName.appendChild(document.createTextNode(roomMap.getName()));
-        eInfo.appendChild(eName);
-
-        // <width>
-        // width
-        Element eWidth = document.createElement("width");
-        eWidth.appendChild(document.createTextNode("" + roomMap.getColumns()));
-        eInfo.appendChild(eWidth);
-
-        // <height>
-        // height
-        Element eHeight = document.createElement("height");
-        eHeight.appendChild(document.createTextNode("" + roomMap.getRows()));
-        eInfo.appendChild(eHeight);
-
-        // info
-        Element eInformation = document.createElement("info");
-        eInformation
-            .appendChild(document.createTextNode("" + roomMap.getInfo()));
-        eInfo.appendChild(eInformation);
-
-        // <tiles>
-        // information about the room
-        Element eTiles = document.createElement("tiles");
-        eRoot.appendChild(eTiles);
-
-        int n = 0;
-        for (int x = 0; x < roomMap.getColumns(); ++x) {
-          for (int y = 0; y < roomMap.getRows(); ++y) {
-
-            // id
-            Element eTile = document.createElement("tile");
-            eTiles.appendChild(eTile);
-            eTile.setAttribute("id", "" + n);
-            eTile.setAttribute("x", "" + x);
-            eTile.setAttribute("y", "" + y);
-
-            // x
-            Element eX = document.createElement("x");
-            eX.appendChild(document.createTextNode("" + x));
-            eTile.appendChild(eX);
-
-            // y
-            Element eY = document.createElement("y");
-            eY.appendChild(document.createTextNode("" + y));
-            eTile.appendChild(eY);
-
-            // image id
-            Element eImageId = document.createElement("imageid");
-            eImageId.appendChild(
-                document.createTextNode("" + roomMap.getImageId(x, y)));
-            eTile.appendChild(eImageId);
-
-            // type
-            Element eType = document.createElement("type");
-            eType.appendChild(
-                document.createTextNode("" + roomMap.getType(x, y)));
-            eTile.appendChild(eType);
-
-            // Tile set
-            Element eSet = document.createElement("set");
-            eSet.appendChild(
-                document.createTextNode("" + roomMap.getSet(x, y)));
-            eTile.appendChild(eSet);
-            ++n;
-          }
-        }
+      temp = createTemp(file);
+      try (OutputStream out = Files.newOutputStream(temp)) {
+        XMLStreamWriter writer = XMLOutputFactory.newInstance()
+            .createXMLStreamWriter(out, "UTF-8");
+        writeRoom(writer);
+        writer.close();
+      }
+      replace(temp, file);
+    } catch (IOException | XMLStreamException e) {
+      e.printStackTrace();
+      deleteTemp(temp);
+      return false;
+    }
+    return true;
+  }
 
+  private void writeRoom(XMLStreamWriter w) throws XMLStreamException {
+    w.writeStartDocument("UTF-8", "1.0");
+    w.writeCharacters("\n");
+    // <room>
+    // root - what type of xml-file is it
+    w.writeStartElement("room");
+
+    // <information>
+    // information about the room
+    indent(w, 1);
+    w.writeStartElement("information");
+    writeElement(w, 2, "name", roomMap.getName());
+    writeElement(w, 2, "width", "" + roomMap.getColumns());
+    writeElement(w, 2, "height", "" + roomMap.getRows());
+    writeElement(w, 2, "info", "" + roomMap.getInfo());
+    indent(w, 1);
+    w.writeEndElement();
+
+    // <tiles>
+    indent(w, 1);
+    w.writeStartElement("tiles");
+    int n = 0;
+    for (int x = 0; x < roomMap.getColumns(); ++x) {
+      for (int y = 0; y < roomMap.getRows(); ++y) {
+        indent(w, 2);
+        w.writeStartElement("tile");
+        w.writeAttribute("id", "" + n);
+        w.writeAttribute("x", "" + x);
+        w.writeAttribute("y", "" + y);
+        writeElement(w, 3, "x", "" + x);
+        writeElement(w, 3, "y", "" + y);
+        writeElement(w, 3, "imageid", "" + roomMap.getImageId(x, y));
+        writeElement(w, 3, "type", "" + roomMap.getType(x, y));
+        writeElement(w, 3, "set", "" + roomMap.getSet(x, y));
+        indent(w, 2);
+        w.writeEndElement();
+        ++n;
       }
+    }
+    indent(w, 1);
+    w.writeEndElement();
 
-      // Transform the document to a xml file
-      TransformerFactory transformerFactory = TransformerFactory.newInstance();
-      Transformer transformer = transformerFactory.newTransformer();
-      transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-      transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount",
-          "2");
+    w.writeCharacters("\n");
+    w.writeEndElement();
+    w.writeCharacters("\n");
+    w.writeEndDocument();
+  }
 
-      DOMSource source = new DOMSource(document);
+  private static void writeElement(XMLStreamWriter w, int depth, String name,
+      String text) throws XMLStreamException {
+    indent(w, depth);
+    w.writeStartElement(name);
+    w.writeCharacters(text);
+    w.writeEndElement();
+  }
 
-      initOutputFile();
-      StreamResult streamResult = new StreamResult(os);
-      transformer.transform(source, streamResult);
+  // Two spaces per level, like the old indenting transformer did
+  private static void indent(XMLStreamWriter w, int depth)
+      throws XMLStreamException {
+    w.writeCharacters("\n");
+    for (int i = 0; i < depth; ++i) {
+      w.writeCharacters("  ");
+    }
+  }
 
-      // Output to console (debug)
-      // StreamResult streamResultConsole = new StreamResult(System.out);
-      // transformer.transform(source, streamResultConsole);
-    } catch (ParserConfigurationException | TransformerException e) {
-      e.printStackTrace();
-      return false;
+  // A new, empty file next to 'file' to write it to first. It gets the
+  // permissions of a file created the normal way, or those of 'file' if it's
+  // there already, so they are kept when it's replaced.
+  private static Path createTemp(Path file) throws IOException {
+    Path temp;
+    while (true) {
+      temp = file.resolveSibling(file.getFileName() + "."
+          + Long.toHexString(System.nanoTime()) + ".tmp");
+      try {
+        Files.createFile(temp);
+        break;
+      } catch (FileAlreadyExistsException e) {
+        // Taken, try another name
+      }
     }
+    if (Files.exists(file)) {
+      try {
+        Files.setPosixFilePermissions(temp,
+            Files.getPosixFilePermissions(file));
+      } catch (UnsupportedOperationException e) {
+        // Not a posix file system, the permissions aren't kept
+      } catch (IOException e) {
+        deleteTemp(temp);
+        throw e;
+      }
+    }
+    return temp;
+  }
 
-    return true;
+  // Move the finished file into place. Readers either see the old or the new
+  // file, never half of one.
+  private static void replace(Path temp, Path file) throws IOException {
+    try {
+      Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private static void deleteTemp(Path temp) {
+    if (temp != null) {
+      try {
+        Files.deleteIfExists(temp);
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
   }
 
+  // Loads the binary version of the room if there is one that is at least as
+  // new as the xml, otherwise the xml
   public boolean load() {
+    if (fileName != null && hasCurrentBinary()) {
+      return loadBinary();
+    }
+    return loadXml();
+  }
+
+  public static void setXmlParser(int parser) {
+    xmlParser = parser;
+  }
+
+  public static int getXmlParser() {
+    return xmlParser;
+  }
+
+  public boolean loadXml() {
+    if (xmlParser == PARSER_DOM) {
+      return loadXmlDom();
+    }
+    return loadXmlStream();
+  }
+
+  private boolean loadXmlStream() {
     if (fileName != null) {
       initInputFile();
+      if (is == null) {
+        return false;
+      }
+
+      XMLStreamReader reader = null;
+      try {
+        reader = XMLInputFactory.newInstance().createXMLStreamReader(is);
+        readRoom(reader);
+      } catch (XMLStreamException | NumberFormatException e) {
+        e.printStackTrace();
+      } finally {
+        try {
+          if (reader != null) {
+            reader.close();
+          }
+          is.close();
+        } catch (XMLStreamException | IOException e) {
+          e.printStackTrace();
+        }
+      }
+
+      return roomMap != null;
+    } else {
+      return false;
+    }
+  }
+
+  // Read the room element by element, the room is created as soon as the
+  // information is read and the tiles are set straight into it
+  private void readRoom(XMLStreamReader reader) throws XMLStreamException {
+    int rows = 0;
+    int columns = 0;
+    String name = "";
+    String info = "";
+    int c = 0;
+
+    int x = 0;
+    int y = 0;
+    int imageid = 0;
+    int type = 0;
+    int set = 0;
+
+    boolean inRoom = false;
+    boolean inInformation = false;
+    boolean inTile = false;
+
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        String element = reader.getLocalName();
+        if (!inRoom) {
+          if (!element.equals("room")) {
+            return;
+          }
+          inRoom = true;
+        } else if (inInformation) {
+          if (element.equals("name")) {
+            name = reader.getElementText();
+            ++c;
+          } else if (element.equals("width")) {
+            columns = readInt(reader);
+            ++c;
+          } else if (element.equals("height")) {
+            rows = readInt(reader);
+            ++c;
+          } else if (element.equals("info")) {
+            info = reader.getElementText();
+            ++c;
+          }
+        } else if (inTile) {
+          if (element.equals("x")) {
+            x = readInt(reader);
+          } else if (element.equals("y")) {
+            y = readInt(reader);
+          } else if (element.equals("imageid")) {
+            imageid = readInt(reader);
+          } else if (element.equals("type")) {
+            type = readInt(reader);
+          } else if (element.equals("set")) {
+            set = readInt(reader);
+          }
+        } else if (element.equals("information")) {
+          inInformation = true;
+        } else if (element.equals("tile") && roomMap != null) {
+          inTile = true;
+          x = y = imageid = type = set = 0;
+        }
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        String element = reader.getLocalName();
+        if (inInformation && element.equals("information")) {
+          inInformation = false;
+          if (c > 3) {
+            roomMap = new RoomMap(name, columns, rows, info);
+          } else {
+            roomMap = new RoomMap("newroom", 20, 16, "A New Room");
+          }
+        } else if (inTile && element.equals("tile")) {
+          inTile = false;
+          roomMap.setImageId(x, y, imageid);
+          roomMap.setType(x, y, type);
+          roomMap.setSet(x, y, set);
+        }
+      }
+    }
+  }
+
+  private static int readInt(XMLStreamReader reader)
+      throws XMLStreamException {
+    return Integer.parseInt(reader.getElementText().trim());
+  }
+
+  private boolean loadXmlDom() {
+    if (fileName != null) {
+      initInputFile();
+      if (is == null) {
+        return false;
+      }
 
       factory = DocumentBuilderFactory.newInstance();
       try {
@@ -216,14 +439,202 @@ public class IoManager implements Serializable {
         }
       } catch (ParserConfigurationException e) {
         e.printStackTrace();
+      } finally {
+        try {
+          is.close();
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
       }
 
-      return true;
+      return roomMap != null;
     } else {
       return false;
     }
   }
 
+  // The file load() will read
+  String getSourceFileName() {
+    return hasCurrentBinary() ? getBinaryFileName(fileName) : fileName;
+  }
+
+  // room.xml is stored as room.room in binary
+  public static String getBinaryFileName(String fileName) {
+    if (fileName.endsWith(XML_EXTENSION)) {
+      return fileName.substring(0, fileName.length() - XML_EXTENSION.length())
+          + BINARY_EXTENSION;
+    }
+    return fileName;
+  }
+
+  private boolean exists(String name) {
+    return getClass().getResource(name) != null || new File(name).isFile();
+  }
+
+  // A binary room next to the xml is only used if it's not older than the
+  // xml, so an xml that was changed after the binary was made isn't hidden
+  // by it
+  private boolean hasCurrentBinary() {
+    String binaryName = getBinaryFileName(fileName);
+    if (!binaryName.endsWith(BINARY_EXTENSION) || !exists(binaryName)) {
+      return false;
+    }
+    if (binaryName.equals(fileName) || !exists(fileName)) {
+      return true;
+    }
+    return lastModified(binaryName) >= lastModified(fileName);
+  }
+
+  // When the resource or file was last changed, 0 if that isn't known
+  private long lastModified(String name) {
+    File file = findFile(name);
+    if (file != null) {
+      return file.lastModified();
+    }
+    URL url = getClass().getResource(name);
+    if (url != null) {
+      try {
+        return url.openConnection().getLastModified();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+    return 0;
+  }
+
+  // The plain file a room is read from, looked up the same way as when it's
+  // read. Null if there is none, or if it's a resource inside of a jar.
+  private File findFile(String name) {
+    URL url = getClass().getResource(name);
+    if (url == null) {
+      File file = new File(name);
+      return file.isFile() ? file : null;
+    }
+    if (url.getProtocol().equals("file")) {
+      try {
+        return new File(url.toURI());
+      } catch (URISyntaxException e) {
+        e.printStackTrace();
+      }
+    }
+    return null;
+  }
+
+  public boolean loadBinary() {
+    if (fileName == null) {
+      return false;
+    }
+    String binaryName = getBinaryFileName(fileName);
+    try {
+      ByteBuffer buffer = mapFile(binaryName);
+      if (buffer.getInt() != BINARY_MAGIC) {
+        System.err.println(binaryName + " is not a binary room");
+        return false;
+      }
+      int version = buffer.getInt();
+      if (version != BINARY_VERSION) {
+        System.err.println(binaryName + " has unknown room version " + version);
+        return false;
+      }
+      int columns = buffer.getInt();
+      int rows = buffer.getInt();
+      String name = readString(buffer);
+      String info = readString(buffer);
+      roomMap = new RoomMap(name, columns, rows, info);
+
+      // Let the room read its tiles straight out of the file
+      int n = columns * rows;
+      IntBuffer imageIds = buffer.slice().asIntBuffer();
+      imageIds.limit(n);
+      buffer.position(buffer.position() + n * 4);
+      ByteBuffer types = buffer.slice();
+      types.limit(n);
+      buffer.position(buffer.position() + n);
+      ByteBuffer sets = buffer.slice();
+      sets.limit(n);
+      roomMap.loadTiles(imageIds, types, sets);
+    } catch (IOException | RuntimeException e) {
+      e.printStackTrace();
+      roomMap = null;
+      return false;
+    }
+    return true;
+  }
+
+  // Map the file into memory if it's a plain file, resources inside of a jar
+  // can't be mapped so those are read into a buffer
+  ByteBuffer mapFile(String name) throws IOException {
+    File file = findFile(name);
+    URL url = getClass().getResource(name);
+    if (file == null && url == null) {
+      throw new FileNotFoundException(name);
+    }
+
+    if (file != null) {
+      try (FileChannel channel = FileChannel.open(file.toPath(),
+          StandardOpenOption.READ)) {
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }
+    }
+
+    try (InputStream in = url.openStream()) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] chunk = new byte[4096];
+      int read;
+      while ((read = in.read(chunk)) != -1) {
+        bytes.write(chunk, 0, read);
+      }
+      return ByteBuffer.wrap(bytes.toByteArray());
+    }
+  }
+
+  private boolean saveBinary() {
+    if (roomMap == null) {
+      return false;
+    }
+    byte[] name = roomMap.getName().getBytes(StandardCharsets.UTF_8);
+    byte[] info = roomMap.getInfo().getBytes(StandardCharsets.UTF_8);
+    int n = roomMap.getColumns() * roomMap.getRows();
+
+    ByteBuffer buffer = ByteBuffer
+        .allocate(4 * 4 + 2 + name.length + 2 + info.length + n * 6);
+    buffer.putInt(BINARY_MAGIC);
+    buffer.putInt(BINARY_VERSION);
+    buffer.putInt(roomMap.getColumns());
+    buffer.putInt(roomMap.getRows());
+    buffer.putShort((short) name.length);
+    buffer.put(name);
+    buffer.putShort((short) info.length);
+    buffer.put(info);
+
+    IntBuffer imageIds = buffer.slice().asIntBuffer();
+    buffer.position(buffer.position() + n * 4);
+    ByteBuffer types = buffer.slice();
+    types.limit(n);
+    buffer.position(buffer.position() + n);
+    ByteBuffer sets = buffer.slice();
+    roomMap.storeTiles(imageIds, types, sets);
+
+    Path file = new File(fileName).getAbsoluteFile().toPath();
+    Path temp = null;
+    try {
+      temp = createTemp(file);
+      Files.write(temp, buffer.array());
+      replace(temp, file);
+    } catch (IOException e) {
+      e.printStackTrace();
+      deleteTemp(temp);
+      return false;
+    }
+    return true;
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
   public RoomMap getRoom() {
     return roomMap;
   }
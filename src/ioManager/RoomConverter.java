@@ -0,0 +1,60 @@
+package ioManager;
+
+import java.io.File;
+
+// Converts rooms between xml and the binary format, both ways and without
+// losing anything. The direction is given by the file endings:
+//
+//   java ioManager.RoomConverter level1.xml level1.room
+//   java ioManager.RoomConverter level1.room level1.xml
+//
+// Any number of pairs can be given. A single directory converts every xml
+// room in it (and below) to binary, next to the xml.
+public class RoomConverter {
+
+  public static void main(String[] args) {
+    if (args.length == 1 && new File(args[0]).isDirectory()) {
+      convertDirectory(new File(args[0]));
+      return;
+    }
+    if (args.length == 0 || args.length % 2 != 0) {
+      System.out.println("Usage: RoomConverter <from> <to> [<from> <to> ...]");
+      System.out.println("       RoomConverter <directory>");
+      return;
+    }
+    for (int i = 0; i < args.length; i += 2) {
+      convert(args[i], args[i + 1]);
+    }
+  }
+
+  public static boolean convert(String from, String to) {
+    IoManager in = new IoManager(from);
+    boolean loaded = from.endsWith(IoManager.BINARY_EXTENSION)
+        ? in.loadBinary() : in.loadXml();
+    if (!loaded) {
+      System.err.println("Couldn't load " + from);
+      return false;
+    }
+    if (!new IoManager(in.getRoom(), to).save()) {
+      System.err.println("Couldn't save " + to);
+      return false;
+    }
+    System.out.println(from + " -> " + to);
+    return true;
+  }
+
+  private static void convertDirectory(File dir) {
+    File[] files = dir.listFiles();
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      if (file.isDirectory()) {
+        convertDirectory(file);
+      } else if (file.getName().endsWith(IoManager.XML_EXTENSION)) {
+        String path = file.getPath();
+        convert(path, IoManager.getBinaryFileName(path));
+      }
+    }
+  }
+}
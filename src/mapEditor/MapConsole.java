@@ -6,6 +6,7 @@ import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.event.KeyEvent;
 import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class MapConsole {
   private Graphics2D g;
@@ -28,6 +29,8 @@ public class MapConsole {
   private Point consoleOffset;
 
   private ArrayList<String> consoleLines = new ArrayList<String>();
+  // Lines from other threads (background saves etc), shown on the next render
+  private ConcurrentLinkedQueue<String> postedLines = new ConcurrentLinkedQueue<String>();
 
   public MapConsole( Graphics2D g, Point mapCoordsOffset, Point menuOffset, Point subMenuOffset,
       Point consoleOffset, Point headerOffset, Point tileCoordsOffset){
@@ -153,7 +156,16 @@ public class MapConsole {
     consoleLines.add(newLine);
   }
 
+  // Safe to call from any thread
+  public void postToConsole(String newLine) {
+    postedLines.add(newLine);
+  }
+
   public void render() {
+    String line;
+    while ((line = postedLines.poll()) != null) {
+      addToConsole(line);
+    }
     displayHeader();
     displayMenu();
     displayCoordinates();
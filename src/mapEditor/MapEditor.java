@@ -159,14 +159,18 @@ public class MapEditor extends JPanel
   private void save() {
     if (room != null && !room.getName().equals("")) {
       IoManager io = new IoManager(room, room.getName() + ".xml");
-
-      if (io.save()) {
-
-        mc.addToConsole("Room '" + room.getName() + "' saved.");
-        // setRoomSaved(true);
-      } else {
-        mc.addToConsole("Failed to save room '" + room.getName() + ".");
-      }
+      String name = room.getName();
+
+      // Saved on a background thread so the editor doesn't freeze
+      mc.addToConsole("Saving room '" + name + "'...");
+      io.saveInBackground(saved -> {
+        if (saved) {
+          mc.postToConsole("Room '" + name + "' saved.");
+          // setRoomSaved(true);
+        } else {
+          mc.postToConsole("Failed to save room '" + name + ".");
+        }
+      });
     } else {
       mc.addToConsole("First enter the room name you want to save.");
       mc.addToConsole("(Press space to enter input mode)");
@@ -208,9 +212,8 @@ public class MapEditor extends JPanel
 
     for (int x = 0; x < 32; ++x) {
       for (int y = 0; y < 32; ++y) {
-        g.drawImage(TileManager.getTileImage(new Point(x, y)),
-            (x * TileManager.TILE_SIZE) + tx, (y * TileManager.TILE_SIZE) + ty,
-            null);
+        TileManager.drawTile(g, new Point(x, y),
+            (x * TileManager.TILE_SIZE) + tx, (y * TileManager.TILE_SIZE) + ty);
       }
     }
     g.setColor(Color.WHITE);
@@ -616,8 +619,8 @@ public class MapEditor extends JPanel
           int yt = my + (y * TileManager.TILE_SIZE);
 
           // Draw the tile image id
-          g.drawImage(TileManager.getTileImage(room.getImageId(x, y),
-              room.getSet(x, y)), xt, yt, null);
+          TileManager.drawTile(g, room.getImageId(x, y),
+              room.getSet(x, y), xt, yt);
           // Draw the tile Type
           g.setFont(hack);
           g.setColor(Color.WHITE);
@@ -678,7 +681,7 @@ public class MapEditor extends JPanel
     int x = (int) selectedTilePreviewOffset.getX();
     int y = (int) selectedTilePreviewOffset.getY();
 
-    g.drawImage(TileManager.getTileImage(selectedTile), x, y, null);
+    TileManager.drawTile(g, selectedTile, x, y);
     g.setColor(Color.WHITE);
     g.setFont(hack);
     g.drawString("" + selectedType, x, y - 10);
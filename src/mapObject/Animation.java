@@ -68,11 +68,12 @@ public class Animation {
   }
 
   public int getFrame() {
-    nextFrame();
     return frames[currentFrame];
   }
 
-  private void nextFrame() {
+  // Step the animation, once per tick, so it runs at the same speed no matter
+  // how often it's drawn (see MapObject.animate)
+  public void update() {
     ++delay;
     if (delay >= delayLimit) {
       ++currentFrame;
@@ -2,42 +2,56 @@ package mapObject;
 
 import java.awt.Graphics2D;
 import java.awt.geom.Point2D;
-import java.util.Random;
 
 import game.Game;
 import gameState.GameStateManager;
 import tileManager.TileManager;
 
 public class Bullet extends MapObject {
-  private Random r = new Random();
-  
-  public Bullet(GameStateManager sm, Point2D.Double spawnPosition,
-      boolean faceRight) {
+  // Bullets are taken from a pool (see GameStateManager.getBulletPool) and
+  // placed with spawn()
+  public Bullet(GameStateManager sm) {
     super(sm);
 
     hitBoxTile.setSize(TileManager.HALF_TILE, TileManager.HALF_TILE);
     hitBox.setSize(6, 6);
 
     moveSpeed = 5.0;
+
+    // Initiate bullet animations (if any)
+    {
+      int[] bullet = { (9 * 32 + 7) };
+      animation = new Animation[1];
+      animation[0] = new Animation(bullet);
+    }
+  }
+
+  public Bullet(GameStateManager sm, Point2D.Double spawnPosition,
+      boolean faceRight) {
+    this(sm);
+    spawn(spawnPosition, faceRight);
+  }
+
+  public void spawn(Point2D.Double spawnPosition, boolean faceRight) {
     spawnPoint.setLocation(spawnPosition);
     coords.setLocation(spawnPoint);
 
-    // Add bad aim
-    double aim = ( r.nextDouble() - 0.65 ) * 0.2;
+    // Add bad aim, from the random numbers of the simulation so a replay
+    // aims the same
+    double aim = ( sm.getRandom().nextDouble() - 0.65 ) * 0.2;
 
     if (faceRight) {
       delta.setLocation(moveSpeed, aim);
     } else {
       delta.setLocation(-moveSpeed, aim);
     }
+  }
 
-    // Initiate bullet animations (if any)
-    {
-      int[] bullet = { (9 * 32 + 7) };
-      animation = new Animation[1];
-      animation[0] = new Animation(bullet);
-    }
-
+  @Override
+  public void reset() {
+    super.reset();
+    hp = 0;
+    animation[0].reset();
   }
 
   @Override
@@ -83,13 +97,12 @@ public class Bullet extends MapObject {
 
   @Override
   public void render(Graphics2D g2d) {
-    double x = coords.getX();
-    double y = coords.getY();
+    double x = getRenderX();
+    double y = getRenderY();
 
-    g2d.drawImage(
-        TileManager.getQuarterTileImage(animation[currentAnim].getFrame(), 0),
-        (int) (x - TileManager.HALF_TILE / 2), (int) (y - TileManager.HALF_TILE / 2),
-        null);
+    TileManager.drawQuarterTile(g2d, animation[currentAnim].getFrame(), 0,
+        (int) (x - TileManager.HALF_TILE / 2),
+        (int) (y - TileManager.HALF_TILE / 2));
 
     drawHitBox(g2d);
   }
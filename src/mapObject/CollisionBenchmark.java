@@ -0,0 +1,113 @@
+package mapObject;
+
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.geom.Point2D;
+import java.util.Random;
+
+import gameState.GameStateManager;
+import tileManager.TileManager;
+
+// Times the tile collision check of map objects, the way it was done before
+// CollisionMap (a Point2D.Double per check, a Point per corner and a state
+// lookup per corner) against checkHitBoxCorners as it is now. Both run over
+// the same positions in a real room, and must find the same solid corners.
+//
+//   java -Djava.awt.headless=true mapObject.CollisionBenchmark [checks]
+public class CollisionBenchmark {
+  private static final int POSITIONS = 4096;
+  private static final int ROUNDS = 10;
+
+  // A map object that is only used for its collision checks
+  private static class Probe extends MapObject {
+    Probe(GameStateManager sm) {
+      super(sm);
+    }
+
+    // checkHitBoxCorners before CollisionMap
+    void checkHitBoxCornersOld(Point2D.Double checkCoords) {
+      int WTile = (int) (checkCoords.getX() - TileManager.HALF_TILE)
+          / TileManager.TILE_SIZE;
+      int ETile = (int) (checkCoords.getX() + TileManager.HALF_TILE - 1)
+          / TileManager.TILE_SIZE;
+      int NTile = (int) (checkCoords.getY() - TileManager.HALF_TILE)
+          / TileManager.TILE_SIZE;
+      int STile = (int) (checkCoords.getY() + TileManager.HALF_TILE - 1)
+          / TileManager.TILE_SIZE;
+
+      int NWTileType = sm.getTileType(new Point(WTile, NTile));
+      int NETileType = sm.getTileType(new Point(ETile, NTile));
+      int SWTileType = sm.getTileType(new Point(WTile, STile));
+      int SETileType = sm.getTileType(new Point(ETile, STile));
+
+      hitBoxNW = NWTileType == 1;
+      hitBoxNE = NETileType == 1;
+      hitBoxSW = SWTileType == 1;
+      hitBoxSE = SETileType == 1;
+    }
+
+    int corners() {
+      return (hitBoxNW ? 1 : 0) + (hitBoxNE ? 1 : 0) + (hitBoxSW ? 1 : 0)
+          + (hitBoxSE ? 1 : 0);
+    }
+
+    public void render(Graphics2D g2d) {
+    }
+  }
+
+  public static void main(String[] args) {
+    System.setProperty("java.awt.headless", "true");
+    int checks = 20000000;
+    if (args.length > 0) {
+      checks = Integer.parseInt(args[0]);
+    }
+
+    // Build the first level, the headless loader does it on the next step
+    GameStateManager sm = new GameStateManager(null, true);
+    sm.setState(GameStateManager.LEVEL_1);
+    sm.update();
+    Probe probe = new Probe(sm);
+
+    // Positions inside of the room, where the corners can't wrap around
+    Random random = new Random(1);
+    double[] xs = new double[POSITIONS];
+    double[] ys = new double[POSITIONS];
+    int w = (sm.getWidth() - 1) * TileManager.TILE_SIZE;
+    int h = (sm.getHeight() - 1) * TileManager.TILE_SIZE;
+    for (int i = 0; i < POSITIONS; ++i) {
+      xs[i] = TileManager.HALF_TILE + random.nextDouble() * w;
+      ys[i] = TileManager.HALF_TILE + random.nextDouble() * h;
+    }
+
+    System.out.println(sm.getWidth() + "x" + sm.getHeight() + " tiles, "
+        + checks + " checks per round");
+    for (int round = 1; round <= ROUNDS; ++round) {
+      long start = System.nanoTime();
+      long oldSolid = 0;
+      for (int i = 0; i < checks; ++i) {
+        int p = i & (POSITIONS - 1);
+        probe.checkHitBoxCornersOld(new Point2D.Double(xs[p], ys[p]));
+        oldSolid += probe.corners();
+      }
+      long oldNanos = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      long newSolid = 0;
+      for (int i = 0; i < checks; ++i) {
+        int p = i & (POSITIONS - 1);
+        probe.checkHitBoxCorners(xs[p], ys[p]);
+        newSolid += probe.corners();
+      }
+      long newNanos = System.nanoTime() - start;
+
+      if (oldSolid != newSolid) {
+        System.out.println("The checks differ: " + oldSolid + " solid corners"
+            + " before, " + newSolid + " now");
+        System.exit(1);
+      }
+      System.out.printf("round %2d: old %.2f ns/check, new %.2f ns/check"
+          + " (%.1fx)%n", round, (double) oldNanos / checks,
+          (double) newNanos / checks, (double) oldNanos / newNanos);
+    }
+  }
+}
@@ -34,13 +34,13 @@ public class Key extends MapObject{
 
   @Override
   public void render(Graphics2D g2d) {
-    double x = coords.getX();
-    double y = coords.getY();
+    double x = getRenderX();
+    double y = getRenderY();
 
     // Draw the mushroom
 
-    g2d.drawImage(TileManager.getTileImage(animation[currentAnim].getFrame()),
-        (int) (x - TileManager.HALF_TILE), (int) (y - TileManager.HALF_TILE), null);
+    TileManager.drawTile(g2d, animation[currentAnim].getFrame(),
+        (int) (x - TileManager.HALF_TILE), (int) (y - TileManager.HALF_TILE));
 
     drawHitBox(g2d);
   }
@@ -8,12 +8,18 @@ import java.awt.image.BufferedImage;
 
 import game.Game;
 import gameState.GameStateManager;
+import gameState.Replay;
 import tileManager.TileManager;
+import tileMap.CollisionMap;
 
 import java.awt.Rectangle;
 import java.awt.geom.Point2D;
 
 public abstract class MapObject {
+  // How far right and down the position can go and stay on the screen
+  public static final int SCREEN_MAX_X = Game.WIN_W - TileManager.TILE_SIZE;
+  public static final int SCREEN_MAX_Y = Game.WIN_H - TileManager.TILE_SIZE;
+
   protected boolean showHitBox = false;
 
   protected GameStateManager sm;
@@ -31,6 +37,9 @@ public abstract class MapObject {
   // Temporary positions to check boundaries
   protected Point2D.Double tempCoords = new Point2D.Double(0.0, 0.0);
   protected Point2D.Double destCoords = new Point2D.Double(0.0, 0.0);
+  // Position before the last simulation step, used to interpolate rendering
+  protected Point2D.Double lastCoords = new Point2D.Double(0.0, 0.0);
+  protected long lastCoordsTick = -1;
   // hitBox for Objects versus Tiles
   protected Dimension hitBoxTile = new Dimension(TileManager.TILE_SIZE,
       TileManager.TILE_SIZE);
@@ -53,6 +62,9 @@ public abstract class MapObject {
   protected int collisionAction;
   protected int collisionTeleport;
 
+  // Set while the object sits unused in a MapObjectPool
+  boolean pooled;
+
   // The speed of movement;
   protected double s;
   // Speed modifier for movement
@@ -95,6 +107,22 @@ public abstract class MapObject {
     locationOffset = new Point2D.Double(0.0, 0.0);
   }
 
+  // Put the object back in a fresh state, so it can be reused from a pool.
+  // Subclasses reset their own fields on top of this.
+  public void reset() {
+    alive = true;
+    remove = false;
+    isHit = false;
+    currentAnim = 0;
+    delta.setLocation(0.0, 0.0);
+    tempCoords.setLocation(0.0, 0.0);
+    destCoords.setLocation(0.0, 0.0);
+    lastCoordsTick = -1;
+    kUp = kDown = kLeft = kRight = false;
+    kJump = kFire = false;
+    jumping = falling = grounded = false;
+  }
+
   public void setSpawnPos(Point2D.Double spawnPoint) {
     this.spawnPoint.setLocation(spawnPoint.getX(), spawnPoint.getY());
     coords.setLocation(this.spawnPoint);
@@ -114,8 +142,36 @@ public abstract class MapObject {
   }
 
   public void setPos(Point2D.Double coords) {
+    lastCoords.setLocation(this.coords);
+    lastCoordsTick = sm.getTicks();
     this.coords.setLocation(coords.getX() % Game.WIN_W,
         coords.getY() % Game.WIN_H);
+    // Wrapped around the screen, don't draw it sliding across
+    if (this.coords.getX() != coords.getX()) {
+      lastCoords.x = this.coords.getX();
+    }
+    if (this.coords.getY() != coords.getY()) {
+      lastCoords.y = this.coords.getY();
+    }
+  }
+
+  // The position to draw the object at, in between the previous and the
+  // current simulation step. If the object wasn't moved during the latest
+  // step, then it's drawn where it is.
+  protected double getRenderX() {
+    if (lastCoordsTick != sm.getTicks()) {
+      return coords.getX();
+    }
+    return lastCoords.getX()
+        + (coords.getX() - lastCoords.getX()) * sm.getInterpolation();
+  }
+
+  protected double getRenderY() {
+    if (lastCoordsTick != sm.getTicks()) {
+      return coords.getY();
+    }
+    return lastCoords.getY()
+        + (coords.getY() - lastCoords.getY()) * sm.getInterpolation();
   }
 
   public void setVec(Point2D.Double delta) {
@@ -130,6 +186,27 @@ public abstract class MapObject {
     }
   }
 
+  // Step the animation that shows, called once per tick after update(). The
+  // flash of a hit from the tick before is over.
+  public void animate() {
+    isHit = false;
+    if (animation != null && currentAnim < animation.length
+        && animation[currentAnim] != null) {
+      animation[currentAnim].update();
+    }
+  }
+
+  // Add where the object is and how it moves to a checksum (see Replay)
+  public int checksum(int h) {
+    h = Replay.mix(h, coords.getX());
+    h = Replay.mix(h, coords.getY());
+    h = Replay.mix(h, delta.getX());
+    h = Replay.mix(h, delta.getY());
+    h = Replay.mix(h, hp);
+    h = Replay.mix(h, currentAnim);
+    return Replay.mix(h, alive ? 1 : 0);
+  }
+
   public int getActionOnCollision() {
     return collisionAction;
   }
@@ -149,7 +226,18 @@ public abstract class MapObject {
   // Check if the current objects hit box intersects with another map objects
   // hit box
   public boolean intersect(MapObject targetMapObject) {
-    return getHitBox().intersects(targetMapObject.getHitBox());
+    int w = hitBox.width;
+    int h = hitBox.height;
+    int tw = targetMapObject.hitBox.width;
+    int th = targetMapObject.hitBox.height;
+    if (w <= 0 || h <= 0 || tw <= 0 || th <= 0) {
+      return false;
+    }
+    int x = getHitBoxX();
+    int y = getHitBoxY();
+    int tx = targetMapObject.getHitBoxX();
+    int ty = targetMapObject.getHitBoxY();
+    return x < tx + tw && tx < x + w && y < ty + th && ty < y + h;
   }
 
   // Check if the current objects hit box intersects with another map objects
@@ -158,6 +246,23 @@ public abstract class MapObject {
     return getHitBox().intersects(target);
   }
 
+  // The hit box as plain numbers, top left corner and size
+  public int getHitBoxX() {
+    return (int) coords.getX() - hitBox.width / 2;
+  }
+
+  public int getHitBoxY() {
+    return (int) coords.getY() - hitBox.height / 2;
+  }
+
+  public int getHitBoxWidth() {
+    return hitBox.width;
+  }
+
+  public int getHitBoxHeight() {
+    return hitBox.height;
+  }
+
   // Return the targets hit box
   public Rectangle getHitBox() {
     Rectangle r = new Rectangle(
@@ -190,7 +295,7 @@ public abstract class MapObject {
 
     // Should we check left or right?
     if (left || right) {
-      checkHitBoxCorners(new Point2D.Double(dex, y));
+      checkHitBoxCorners(dex, y);
       // Should we check the left side?
       if (left) {
         // Are we moving left?
@@ -226,7 +331,7 @@ public abstract class MapObject {
     }
     // Should we check the upper or lower side?
     if (up || down) {
-      checkHitBoxCorners(new Point2D.Double(x, dey));
+      checkHitBoxCorners(x, dey);
       // Should we check the upper side?
       if (up) {
         // Are we moving upwards (jumping)?
@@ -263,7 +368,7 @@ public abstract class MapObject {
       }
     }
     // Do we have a solid tile below us?
-    checkHitBoxCorners(new Point2D.Double(x, dey + 1));
+    checkHitBoxCorners(x, dey + 1);
     if (!hitBoxSW && !hitBoxSE) {
       // Nope, so we should start falling
       falling = true;
@@ -278,24 +383,22 @@ public abstract class MapObject {
   // has a tile SOLID-tag attached to it. Set the corresponding boolean
   // This method SHOULD correct calculate the corners of the box
   protected void checkHitBoxCorners(Point2D.Double checkCoords) {
-    int WTile = (int) (checkCoords.getX() - TileManager.HALF_TILE)
-        / TileManager.TILE_SIZE;
-    int ETile = (int) (checkCoords.getX() + TileManager.HALF_TILE - 1)
-        / TileManager.TILE_SIZE;
-    int NTile = (int) (checkCoords.getY() - TileManager.HALF_TILE)
+    checkHitBoxCorners(checkCoords.getX(), checkCoords.getY());
+  }
+
+  protected void checkHitBoxCorners(double checkX, double checkY) {
+    int WTile = (int) (checkX - TileManager.HALF_TILE) / TileManager.TILE_SIZE;
+    int ETile = (int) (checkX + TileManager.HALF_TILE - 1)
         / TileManager.TILE_SIZE;
-    int STile = (int) (checkCoords.getY() + TileManager.HALF_TILE - 1)
+    int NTile = (int) (checkY - TileManager.HALF_TILE) / TileManager.TILE_SIZE;
+    int STile = (int) (checkY + TileManager.HALF_TILE - 1)
         / TileManager.TILE_SIZE;
 
-    int NWTileType = sm.getTileType(new Point(WTile, NTile));
-    int NETileType = sm.getTileType(new Point(ETile, NTile));
-    int SWTileType = sm.getTileType(new Point(WTile, STile));
-    int SETileType = sm.getTileType(new Point(ETile, STile));
-
-    hitBoxNW = NWTileType == 1;
-    hitBoxNE = NETileType == 1;
-    hitBoxSW = SWTileType == 1;
-    hitBoxSE = SETileType == 1;
+    CollisionMap map = sm.getCollisionMap();
+    hitBoxNW = map.isSolid(WTile, NTile);
+    hitBoxNE = map.isSolid(ETile, NTile);
+    hitBoxSW = map.isSolid(WTile, STile);
+    hitBoxSE = map.isSolid(ETile, STile);
   }
 
   // Return the tileMap position from global coordinates
@@ -317,14 +420,14 @@ public abstract class MapObject {
     double tx = tempCoords.getX();
     double ty = tempCoords.getY();
 
-    if (tx > Game.WIN_W - TileManager.TILE_SIZE) {
-      tx = Game.WIN_W - TileManager.TILE_SIZE;
+    if (tx > SCREEN_MAX_X) {
+      tx = SCREEN_MAX_X;
     } else if (tx < 0.0) {
       tx = 0.0;
     }
 
-    if (ty > Game.WIN_H - TileManager.TILE_SIZE) {
-      ty = Game.WIN_H - TileManager.TILE_SIZE;
+    if (ty > SCREEN_MAX_Y) {
+      ty = SCREEN_MAX_Y;
     } else if (ty < 0.0) {
       ty = 0.0;
     }
@@ -436,8 +539,8 @@ public abstract class MapObject {
   public void drawHitBox(Graphics2D g2d) {
     if (showHitBox) {
       g2d.setColor(Color.ORANGE);
-      g2d.drawRect((int) (coords.getX() - hitBox.getWidth() / 2),
-          (int) (coords.getY() - hitBox.getHeight() / 2),
+      g2d.drawRect((int) (getRenderX() - hitBox.getWidth() / 2),
+          (int) (getRenderY() - hitBox.getHeight() / 2),
           (int) hitBox.getWidth(), (int) hitBox.getHeight());
       g2d.setColor(Color.BLACK);
     }
@@ -445,18 +548,18 @@ public abstract class MapObject {
 
   public abstract void render(Graphics2D g2d);
 
-  // Flash the thing that is hit, adjusts to the size of the hitbox
+  // Flash the thing that is hit, adjusts to the size of the hitbox. Shown for
+  // the tick it was hit on (see animate).
   public void drawHit(Graphics2D g2d) {
     if (isHit) {
       int sx = hitBox.width;
       int sy = hitBox.height;
 
-      int x = (int) coords.getX() - (sx / 2);
-      int y = (int) coords.getY() - (sy / 2);
+      int x = (int) getRenderX() - (sx / 2);
+      int y = (int) getRenderY() - (sy / 2);
 
       g2d.setColor(Color.WHITE);
       g2d.fillOval(x, y, sx, sy);
-      isHit = false;
     }
   }
 
@@ -0,0 +1,93 @@
+package mapObject;
+
+import java.util.ArrayList;
+import java.util.function.Supplier;
+
+// Keeps map objects that are done around, so short lived objects (bullets
+// etc) can be reused instead of being created again. acquire() hands out a
+// reset object, release() gives it back when it's removed from the state.
+public class MapObjectPool<T extends MapObject> {
+  private Supplier<T> factory;
+  private ArrayList<T> free = new ArrayList<T>();
+
+  // Statistics
+  private int created;
+  private long acquired;
+  private long released;
+  private int inUse;
+  private int peakInUse;
+
+  public MapObjectPool(Supplier<T> factory) {
+    this.factory = factory;
+  }
+
+  // Get an object from the pool, or create a new one if it's empty
+  public T acquire() {
+    T mo;
+    if (free.isEmpty()) {
+      mo = factory.get();
+      ++created;
+    } else {
+      mo = free.remove(free.size() - 1);
+      mo.pooled = false;
+    }
+    mo.reset();
+
+    ++acquired;
+    ++inUse;
+    if (inUse > peakInUse) {
+      peakInUse = inUse;
+    }
+    return mo;
+  }
+
+  // Give an object back to the pool. It must not be used after this.
+  public void release(T mo) {
+    if (!mo.pooled) {
+      mo.pooled = true;
+      free.add(mo);
+      ++released;
+      --inUse;
+    }
+  }
+
+  // Fill the pool up with n objects ahead of time
+  public void prefill(int n) {
+    while (free.size() < n) {
+      T mo = factory.get();
+      mo.pooled = true;
+      free.add(mo);
+      ++created;
+    }
+  }
+
+  public int getCreated() {
+    return created;
+  }
+
+  public long getAcquired() {
+    return acquired;
+  }
+
+  public long getReleased() {
+    return released;
+  }
+
+  public int getInUse() {
+    return inUse;
+  }
+
+  public int getPeakInUse() {
+    return peakInUse;
+  }
+
+  public int getFree() {
+    return free.size();
+  }
+
+  public String toString() {
+    return "created " + created + ", acquired " + acquired + ", released "
+        + released + ", in use " + inUse + " (peak " + peakInUse + "), free "
+        + free.size();
+  }
+}
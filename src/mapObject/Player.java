@@ -2,7 +2,6 @@ package mapObject;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
-import java.awt.geom.Point2D;
 import java.util.ArrayList;
 
 import audioPlayer.AudioPlayer;
@@ -35,8 +34,10 @@ public class Player extends MapObject {
     super(sm);
 
     ammo = new ArrayList<MapObject>();
-    ammoDelay = 150000000; // Nano seconds. divide with 1.000.000.000 to get s
-    ammoTimer = System.nanoTime() - ammoDelay;
+    // Simulation steps between shots (150 ms), counted in steps and not in
+    // time so a replay shoots on the same steps
+    ammoDelay = Game.UPDATES_PER_SECOND * 150 / 1000;
+    ammoTimer = sm.getTicks() - ammoDelay;
     recoil = false;
     recoilDistance = 2.0;
     spawnBullet = false;
@@ -105,7 +106,6 @@ public class Player extends MapObject {
       checkTileMapCollisionRecoil();
       limitToScreen();
       setPos(tempCoords);
-      // animation[currentAnim].nextFrame();
     } else {
       stopXMovement(0.025);
       checkTileMapCollision(true, true, true, true);
@@ -120,10 +120,10 @@ public class Player extends MapObject {
 
   // Spawn new bullets if kFire is triggered and the timer is ready
   private void shooting() {
-    if (kFire && System.nanoTime() - ammoDelay >= ammoTimer) {
+    if (kFire && sm.getTicks() - ammoDelay >= ammoTimer) {
       // Keeping the shots tied to the player. If player dies, so does the shots
       spawnBullet = true;
-      ammoTimer = System.nanoTime();
+      ammoTimer = sm.getTicks();
       ammoFired = 2;
 
       // The recoil
@@ -264,7 +264,7 @@ public class Player extends MapObject {
     // The destination coordinates to check against
     double dex = x + dx;
 
-    checkHitBoxCorners(new Point2D.Double(dex, coords.getY()));
+    checkHitBoxCorners(dex, coords.getY());
     // Are we moving left but not facing left? (to prevent recoil speed boost)
     if (dx < 0.0 && faceRight && !kLeft) {
       // Did any of the corners to the left hit a solid tile?
@@ -300,12 +300,12 @@ public class Player extends MapObject {
 
   @Override
   public void render(Graphics2D g2d) {
-    double x = coords.getX();
-    double y = coords.getY();
+    double x = getRenderX();
+    double y = getRenderY();
 
     // Draw the player
-    g2d.drawImage(TileManager.getTileImage(animation[currentAnim].getFrame()),
-        (int) x - TileManager.HALF_TILE, (int) y - TileManager.HALF_TILE, null);
+    TileManager.drawTile(g2d, animation[currentAnim].getFrame(),
+        (int) x - TileManager.HALF_TILE, (int) y - TileManager.HALF_TILE);
 
     // At the moment all bullets are tied to the player, move to the current
     // state or something like that
@@ -315,13 +315,11 @@ public class Player extends MapObject {
 
     // The gun
     if (faceRight) {
-      g2d.drawImage(
-          TileManager.getQuarterTileImage(WEAPON_RIGHT, WEAPON_RIGHT_QTILE),
-          (int) x, (int) y, null);
+      TileManager.drawQuarterTile(g2d, WEAPON_RIGHT, WEAPON_RIGHT_QTILE,
+          (int) x, (int) y);
     } else {
-      g2d.drawImage(
-          TileManager.getQuarterTileImage(WEAPON_LEFT, WEAPON_LEFT_QTILE),
-          (int) x - TileManager.HALF_TILE, (int) y, null);
+      TileManager.drawQuarterTile(g2d, WEAPON_LEFT, WEAPON_LEFT_QTILE,
+          (int) x - TileManager.HALF_TILE, (int) y);
     }
 
     // If player has fired, display the flash
@@ -333,9 +331,8 @@ public class Player extends MapObject {
       } else {
         offset = -10;
       }
-      g2d.drawImage(TileManager.getTileImage(9 * 32 + 8),
-          (int) coords.getX() + offset - TileManager.HALF_TILE,
-          (int) coords.getY() - 5, null);
+      TileManager.drawTile(g2d, 9 * 32 + 8,
+          (int) x + offset - TileManager.HALF_TILE, (int) y - 5);
       --ammoFired;
     }
     drawHitBox(g2d);
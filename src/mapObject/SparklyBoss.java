@@ -40,8 +40,10 @@ public class SparklyBoss extends MapObject {
           (21 * 32 + 22), (21 * 32 + 15), (21 * 32 + 28) };
       animation[ANIM_STANDBY] = new Animation(tAnimAlive);
       animation[ANIM_DEATH] = new Animation(tAnimDeath);
-      animation[ANIM_STANDBY].setDelayLimit(50);
-      animation[ANIM_DEATH].setDelayLimit(10);
+      // Counted in steps. These were 50 and 10 when the animation stepped on
+      // each of the 9 tiles drawn, a frame every 5.6 and 1.1 steps.
+      animation[ANIM_STANDBY].setDelayLimit(6);
+      animation[ANIM_DEATH].setDelayLimit(1);
     }
   }
 
@@ -165,20 +167,18 @@ public class SparklyBoss extends MapObject {
 
   @Override
   public void render(Graphics2D g2d) {
-    double x = coords.getX();
-    double y = coords.getY();
+    double x = getRenderX();
+    double y = getRenderY();
 
     // Draw the animation
     for (int tx = 0; tx < 3; ++tx) {
       for (int ty = 0; ty < 3; ++ty) {
-        g2d.drawImage(
-            TileManager.getTileImage(
-                animation[currentAnim].getFrame() + (tx - 1) + ((ty - 1) * 32)),
+        TileManager.drawTile(g2d,
+            animation[currentAnim].getFrame() + (tx - 1) + ((ty - 1) * 32),
             (int) (x - (hitBox.width / 2) + ((tx - 1) * (hitBox.width / 2)))
                 + TileManager.HALF_TILE,
             (int) (y - (hitBox.height / 2) + ((ty - 1) * (hitBox.height / 2)))
-                + TileManager.HALF_TILE,
-            null);
+                + TileManager.HALF_TILE);
       }
     }
 
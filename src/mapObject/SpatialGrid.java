@@ -0,0 +1,128 @@
+package mapObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// A uniform grid over the screen, used to only test map objects against the
+// ones that are close by. The grid is rebuilt from a list of map objects every
+// update, and all of its storage is reused between updates.
+public class SpatialGrid {
+  private int columns;
+  private int rows;
+  private int cellSize;
+
+  // Every cell is a linked list of entries, an entry points out one of the
+  // map objects (by its index in the list). An object overlapping several
+  // cells has one entry in each.
+  private int[] cellHead;
+  private int[] entryNext;
+  private int[] entryObject;
+  private int entries;
+
+  private ArrayList<MapObject> objects;
+
+  // Objects found by the last query (indices into the list), and the query
+  // each object was last found by, so objects are only reported once
+  private int[] found;
+  private int[] foundBy;
+  private int query;
+
+  public SpatialGrid(int columns, int rows, int cellSize) {
+    this.columns = columns;
+    this.rows = rows;
+    this.cellSize = cellSize;
+    cellHead = new int[columns * rows];
+    entryNext = new int[64];
+    entryObject = new int[64];
+    found = new int[64];
+    foundBy = new int[64];
+  }
+
+  // Put all the map objects in the list into the grid
+  public void build(ArrayList<MapObject> objects) {
+    this.objects = objects;
+    Arrays.fill(cellHead, -1);
+    entries = 0;
+
+    if (found.length < objects.size()) {
+      found = new int[objects.size() * 2];
+      foundBy = new int[objects.size() * 2];
+      query = 0;
+    }
+
+    for (int i = 0; i < objects.size(); ++i) {
+      MapObject mo = objects.get(i);
+      int x1 = toColumn(mo.getHitBoxX());
+      int y1 = toRow(mo.getHitBoxY());
+      int x2 = toColumn(mo.getHitBoxX() + mo.getHitBoxWidth() - 1);
+      int y2 = toRow(mo.getHitBoxY() + mo.getHitBoxHeight() - 1);
+      for (int x = x1; x <= x2; ++x) {
+        for (int y = y1; y <= y2; ++y) {
+          add(y * columns + x, i);
+        }
+      }
+    }
+  }
+
+  private void add(int cell, int object) {
+    if (entries == entryNext.length) {
+      entryNext = Arrays.copyOf(entryNext, entries * 2);
+      entryObject = Arrays.copyOf(entryObject, entries * 2);
+    }
+    entryNext[entries] = cellHead[cell];
+    entryObject[entries] = object;
+    cellHead[cell] = entries;
+    ++entries;
+  }
+
+  // Find the map objects sharing a cell with the hit box of mo. Returns how
+  // many were found, get them with getFound(0 .. n - 1). They are in the same
+  // order as in the list the grid was built from.
+  public int query(MapObject mo) {
+    return query(mo.getHitBoxX(), mo.getHitBoxY(), mo.getHitBoxWidth(),
+        mo.getHitBoxHeight());
+  }
+
+  // Same for a hit box given as its top left corner and size
+  public int query(int left, int top, int width, int height) {
+    ++query;
+    if (query == Integer.MAX_VALUE) {
+      Arrays.fill(foundBy, 0);
+      query = 1;
+    }
+
+    int n = 0;
+    int x1 = toColumn(left);
+    int y1 = toRow(top);
+    int x2 = toColumn(left + width - 1);
+    int y2 = toRow(top + height - 1);
+    for (int x = x1; x <= x2; ++x) {
+      for (int y = y1; y <= y2; ++y) {
+        for (int e = cellHead[y * columns + x]; e != -1; e = entryNext[e]) {
+          int object = entryObject[e];
+          if (foundBy[object] != query) {
+            foundBy[object] = query;
+            found[n] = object;
+            ++n;
+          }
+        }
+      }
+    }
+    Arrays.sort(found, 0, n);
+    return n;
+  }
+
+  public MapObject getFound(int i) {
+    return objects.get(found[i]);
+  }
+
+  // Cell column and row of a position (in pixels), things outside of the
+  // grid end up in the edge cells
+  private int toColumn(int x) {
+    return Math.min(Math.max(Math.floorDiv(x, cellSize), 0), columns - 1);
+  }
+
+  private int toRow(int y) {
+    return Math.min(Math.max(Math.floorDiv(y, cellSize), 0), rows - 1);
+  }
+}
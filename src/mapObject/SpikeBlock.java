@@ -94,7 +94,7 @@ public class SpikeBlock extends MapObject {
     double dey = y + dy;
 
     if (down) {
-      checkHitBoxCorners(new Point2D.Double(x, dey));
+      checkHitBoxCorners(x, dey);
       if (down) {
         if (dy > 0.0) {
           if (hitBoxSW || hitBoxSE) {
@@ -107,7 +107,7 @@ public class SpikeBlock extends MapObject {
         }
       }
     }
-    checkHitBoxCorners(new Point2D.Double(x, dey + 1));
+    checkHitBoxCorners(x, dey + 1);
     if (!hitBoxSW && !hitBoxSE) {
       falling = true;
     }
@@ -119,13 +119,13 @@ public class SpikeBlock extends MapObject {
 
   @Override
   public void render(Graphics2D g2d) {
-    double x = coords.getX();
-    double y = coords.getY();
+    double x = getRenderX();
+    double y = getRenderY();
 
     // Draw the mushroom
 
-    g2d.drawImage(TileManager.getTileImage(animation[currentAnim].getFrame()),
-        (int) (x - TileManager.HALF_TILE), (int) (y - TileManager.HALF_TILE), null);
+    TileManager.drawTile(g2d, animation[currentAnim].getFrame(),
+        (int) (x - TileManager.HALF_TILE), (int) (y - TileManager.HALF_TILE));
     drawHit(g2d);
     drawHitBox(g2d);
   }
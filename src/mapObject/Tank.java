@@ -188,7 +188,7 @@ public class Tank extends MapObject {
     double dey = y + dy;
 
     if (left || right) {
-      checkHitBoxCorners(new Point2D.Double(dex, y));
+      checkHitBoxCorners(dex, y);
       if (left) {
         if (dx < 0.0) {
           if (hitBoxNW || hitBoxSW) {
@@ -217,7 +217,7 @@ public class Tank extends MapObject {
       }
     }
     if (up || down) {
-      checkHitBoxCorners(new Point2D.Double(x, dey));
+      checkHitBoxCorners(x, dey);
       if (up) {
         if (dy < 0.0) {
           if (hitBoxNW || hitBoxNE) {
@@ -240,7 +240,7 @@ public class Tank extends MapObject {
         }
       }
     }
-    checkHitBoxCorners(new Point2D.Double(x, dey + 1));
+    checkHitBoxCorners(x, dey + 1);
     if (!hitBoxSW && !hitBoxSE) {
       falling = true;
     }
@@ -252,13 +252,13 @@ public class Tank extends MapObject {
 
   @Override
   public void render(Graphics2D g2d) {
-    double x = coords.getX();
-    double y = coords.getY();
+    double x = getRenderX();
+    double y = getRenderY();
 
     // Draw the mushroom
 
-    g2d.drawImage(TileManager.getTileImage(animation[currentAnim].getFrame()),
-        (int) (x - TileManager.HALF_TILE), (int) (y - TileManager.HALF_TILE), null);
+    TileManager.drawTile(g2d, animation[currentAnim].getFrame(),
+        (int) (x - TileManager.HALF_TILE), (int) (y - TileManager.HALF_TILE));
     drawHit(g2d);
     drawHitBox(g2d);
   }
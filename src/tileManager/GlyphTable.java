@@ -0,0 +1,119 @@
+package tileManager;
+
+import java.awt.Graphics2D;
+
+// Where every character of the two bitmap fonts can be found in the tile
+// sheet. The table is built once, so drawing text is a lookup and a blit per
+// character, without making any strings or images.
+public class GlyphTable {
+  // The large font is on row 6 in the tile sheet, one letter per tile
+  private static final int LARGE_FIRST = 6 * 32;
+  // The small font starts at row 0, col 14, with two letters in the top
+  // corners of each tile and two numbers in the bottom corners
+  private static final int SMALL_FIRST = 0 * 32 + 14;
+
+  // Characters outside of the table are drawn as '?'
+  private static final int CHARS = 128;
+
+  private static final int[] large = new int[CHARS];
+  private static final int[] small = new int[CHARS];
+  private static final int[] letterQuadrant = new int[CHARS];
+  private static final int[] numberQuadrant = new int[CHARS];
+
+  static {
+    for (int c = 0; c < CHARS; ++c) {
+      int pos = getAsciiPos(Character.toLowerCase(c));
+      large[c] = LARGE_FIRST + pos;
+      small[c] = SMALL_FIRST + (pos / 2);
+      letterQuadrant[c] = pos % 2;
+      numberQuadrant[c] = (1 - (pos % 2)) + 2;
+    }
+  }
+
+  // Position of a (lower case) character in the fonts
+  public static int getAsciiPos(int c) {
+    switch (c) {
+    case 33:
+      // !
+      c = 28;
+      break;
+    case 44:
+      // ,
+      c = 27;
+      break;
+    case 46:
+      // .
+      c = 26;
+      break;
+    case 63:
+      // ?
+      c = 29;
+      break;
+    case 32:
+      // " "
+      c = 30;
+      break;
+    default:
+      if ((c >= 97) && (c <= (97 + 26))) {
+        // letters a to z
+        c -= 97;
+      } else if ((c >= 48) && (c <= (48 + 10))) {
+        // numbers 0 - 9
+        c -= 48;
+      } else c = 29;
+      break;
+    }
+    return c;
+  }
+
+  private static int index(char c) {
+    return (c < CHARS) ? c : '?';
+  }
+
+  // The tile of a character in the large font
+  public static int getLargeTile(char c) {
+    return large[index(c)];
+  }
+
+  // The tile and quarter of a character in the small font
+  public static int getSmallTile(char c) {
+    return small[index(c)];
+  }
+
+  public static int getSmallQuadrant(char c, boolean isNumber) {
+    return isNumber ? numberQuadrant[index(c)] : letterQuadrant[index(c)];
+  }
+
+  public static void drawLarge(Graphics2D g2d, char c, int x, int y) {
+    TileManager.drawTile(g2d, large[index(c)], x, y);
+  }
+
+  public static void drawSmall(Graphics2D g2d, char c, int x, int y) {
+    int i = index(c);
+    TileManager.drawQuarterTile(g2d, small[i], letterQuadrant[i], x, y);
+  }
+
+  public static void drawSmallNumber(Graphics2D g2d, char c, int x, int y) {
+    int i = index(c);
+    TileManager.drawQuarterTile(g2d, small[i], numberQuadrant[i], x, y);
+  }
+
+  // Draw a value with the small numbers, one half tile per digit, without
+  // turning it into a string first
+  public static void drawSmallNumber(Graphics2D g2d, int value, int x, int y) {
+    long v = value;
+    if (v < 0) {
+      drawSmallNumber(g2d, '-', x, y);
+      x += TileManager.HALF_TILE;
+      v = -v;
+    }
+    long divisor = 1;
+    while (divisor * 10 <= v) {
+      divisor *= 10;
+    }
+    for (; divisor > 0; divisor /= 10) {
+      drawSmallNumber(g2d, (char) ('0' + (v / divisor) % 10), x, y);
+      x += TileManager.HALF_TILE;
+    }
+  }
+}
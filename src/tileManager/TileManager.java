@@ -1,9 +1,14 @@
 package tileManager;
 
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
 import java.awt.Point;
+import java.awt.Transparency;
 import java.awt.image.BufferedImage;
 import java.io.Serializable;
 import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.imageio.ImageIO;
 
@@ -12,24 +17,75 @@ import javax.imageio.ImageIO;
 public class TileManager implements Serializable {
   private static final long serialVersionUID = 2;
 
-  private static class Tile {
+  // One tile sheet, kept as a single screen compatible image (an atlas) that
+  // tiles are blitted out of. The size is kept per set, so sheets may differ.
+  private static class TileSet {
 
-    private BufferedImage image;
+    private BufferedImage atlas;
+    private int columns;
+    private int rows;
+    // Tiles, and quarters of tiles, as images of their own. They share the
+    // pixels of the atlas, and are only made when someone asks for one.
+    // Drawing blits from the atlas and doesn't need them.
+    private BufferedImage[] tiles;
+    private BufferedImage[] quarters;
 
-    public Tile(BufferedImage image) {
-      this.image = image;
+    public TileSet(BufferedImage atlas) {
+      this.atlas = atlas;
+      columns = atlas.getWidth() / TILE_SIZE;
+      rows = atlas.getHeight() / TILE_SIZE;
+      tiles = new BufferedImage[columns * rows];
+      quarters = new BufferedImage[columns * rows * 4];
     }
 
-    public BufferedImage getImage() {
+    // Tiles outside of the sheet are drawn as the default tile
+    public int clamp(int x, int y) {
+      if (x >= 0 && x < columns && y >= 0 && y < rows) {
+        return y * columns + x;
+      }
+      return DEFAULT_TILE;
+    }
+
+    public int clamp(int num) {
+      return (num >= 0 && num < tiles.length) ? num : DEFAULT_TILE;
+    }
+
+    public BufferedImage getImage(int num) {
+      BufferedImage image = tiles[num];
+      if (image == null) {
+        image = atlas.getSubimage((num % columns) * TILE_SIZE,
+            (num / columns) * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+        tiles[num] = image;
+      }
       return image;
     }
+
+    public BufferedImage getQuarter(int num, int q) {
+      q = (q >= 0 && q < 4) ? q : 0;
+      BufferedImage image = quarters[num * 4 + q];
+      if (image == null) {
+        image = atlas.getSubimage((num % columns) * TILE_SIZE + getQuarterX(q),
+            (num / columns) * TILE_SIZE + getQuarterY(q), HALF_TILE,
+            HALF_TILE);
+        quarters[num * 4 + q] = image;
+      }
+      return image;
+    }
+
+    public void draw(Graphics2D g2d, int num, int xOffset, int yOffset,
+        int size, int x, int y) {
+      int sx = (num % columns) * TILE_SIZE + xOffset;
+      int sy = (num / columns) * TILE_SIZE + yOffset;
+      g2d.drawImage(atlas, x, y, x + size, y + size, sx, sy, sx + size,
+          sy + size, null);
+    }
   }
 
-  // tileSets contains the images of all tile sheets.
-  // First [] is the id for the tile sheet
-  // Second and third [] is the coordinates where you can find a specific tile
-  // private static Tile[][][] tileSets;
-  private static HashMap<Integer, Tile[][]> sets = new HashMap<Integer, Tile[][]>();
+  // tileSets contains the atlases of the loaded tile sheets, by the id for the
+  // sheet. Sheets are loaded when they are first used (or asked to be loaded
+  // by a state), from the files they are registered with.
+  private static ConcurrentHashMap<Integer, TileSet> sets = new ConcurrentHashMap<Integer, TileSet>();
+  private static HashMap<Integer, String> fileNames = new HashMap<Integer, String>();
 
   // Which is the currently activated set of tiles
   private static int current;
@@ -37,110 +93,128 @@ public class TileManager implements Serializable {
   public static int TILE_SIZE = 16;
   public static int HALF_TILE = TILE_SIZE / 2;
 
-  // The width and height of a tile sheet source image, should be the same size
-  // for all source sheets
-  private static int columns;
-  private static int rows;
+  // Drawn for tiles outside of a sheet, column 1 on row 0
+  private static final int DEFAULT_TILE = 1;
 
-  // How many sets are loaded into the system
+  // Which sets there are in the system
   public static void init() {
-    // Load the tile sheets to a hash map
-    load(0, "/assets/sheet/32x32_16x16px_tech.png");
-    load(1, "/assets/sheet/32x32_16x16px.png");
+    fileNames.put(0, "/assets/sheet/32x32_16x16px_tech.png");
+    fileNames.put(1, "/assets/sheet/32x32_16x16px.png");
   }
 
-  // Load the specified tile sheets
-  private static void load(int id, String fileName) {
-    BufferedImage tileSheet;
-    try {
+  // Load the specified tile sheet, if it isn't already. Different sheets can
+  // be loaded at the same time.
+  public static void load(int id) {
+    if (sets.get(id) == null && fileNames.get(id) != null) {
+      sets.computeIfAbsent(id, k -> read(fileNames.get(k)));
+    }
+  }
 
-      // Load the tile sheet to a buffered image
-      tileSheet = ImageIO.read(TileManager.class.getResourceAsStream(fileName));
-      columns = tileSheet.getWidth() / TileManager.TILE_SIZE;
-      rows = tileSheet.getHeight() / TileManager.TILE_SIZE;
-      Tile[][] t = new Tile[columns][rows];
-
-      // Columns and Rows of source tile sheet
-      // Save the sub image to the correct tile position
-      for (int x = 0; x < columns; ++x) {
-        for (int y = 0; y < rows; ++y) {
-          t[x][y] = new Tile(tileSheet.getSubimage(x * TILE_SIZE, y * TILE_SIZE,
-              TILE_SIZE, TILE_SIZE));
-        }
-      }
-      sets.put(id, t);
+  // Forget a tile sheet, it's loaded again if it's used
+  public static void unload(int id) {
+    sets.remove(id);
+  }
+
+  public static boolean isLoaded(int id) {
+    return sets.get(id) != null;
+  }
+
+  private static TileSet getSet(int id) {
+    TileSet s = sets.get(id);
+    if (s == null) {
+      load(id);
+      s = sets.get(id);
+    }
+    return s;
+  }
+
+  // Read a tile sheet into an atlas
+  private static TileSet read(String fileName) {
+    try {
+      // Load the tile sheet, and copy it to an image in the format of the
+      // screen. The image from ImageIO is often not one that can be kept in
+      // video memory.
+      BufferedImage tileSheet = ImageIO
+          .read(TileManager.class.getResourceAsStream(fileName));
+      BufferedImage atlas = createCompatibleImage(tileSheet.getWidth(),
+          tileSheet.getHeight());
+      Graphics2D g2d = atlas.createGraphics();
+      g2d.drawImage(tileSheet, 0, 0, null);
+      g2d.dispose();
+      atlas.setAccelerationPriority(1.0f);
+      return new TileSet(atlas);
     } catch (Exception e) {
       e.printStackTrace();
       System.exit(0);
     }
+    return null;
+  }
+
+  // Draw a tile straight from the atlas of its set, at x, y on screen
+  public static void drawTile(Graphics2D g2d, int num, int set, int x, int y) {
+    TileSet s = getSet(set);
+    s.draw(g2d, s.clamp(num), 0, 0, TILE_SIZE, x, y);
+  }
+
+  public static void drawTile(Graphics2D g2d, int num, int x, int y) {
+    drawTile(g2d, num, current, x, y);
+  }
+
+  public static void drawTile(Graphics2D g2d, Point coords, int set, int x,
+      int y) {
+    TileSet s = getSet(set);
+    s.draw(g2d, s.clamp((int) coords.getX(), (int) coords.getY()), 0, 0,
+        TILE_SIZE, x, y);
+  }
+
+  public static void drawTile(Graphics2D g2d, Point coords, int x, int y) {
+    drawTile(g2d, coords, current, x, y);
+  }
+
+  // Draw a quarter of a tile, 'q' works as for getQuarterTileImage
+  public static void drawQuarterTile(Graphics2D g2d, int num, int q, int set,
+      int x, int y) {
+    TileSet s = getSet(set);
+    s.draw(g2d, s.clamp(num), getQuarterX(q), getQuarterY(q), HALF_TILE, x, y);
+  }
+
+  public static void drawQuarterTile(Graphics2D g2d, int num, int q, int x,
+      int y) {
+    drawQuarterTile(g2d, num, q, current, x, y);
   }
 
   public static BufferedImage getTileImage(Point coords, int set) {
     // Get the image for the specified Tile
-    BufferedImage image;
-    int x = (int) coords.getX();
-    int y = (int) coords.getY();
-    if (x >= 0 && x < columns && y >= 0 && y < rows) {
-      image = sets.get(set)[x][y].getImage();
-
-    } else {
-      // If the coordinates are outside of the tile sheet, return a default tile
-      image = sets.get(set)[1][0].getImage();
-    }
-    return image;
+    TileSet s = getSet(set);
+    return s.getImage(s.clamp((int) coords.getX(), (int) coords.getY()));
   }
 
   public static BufferedImage getTileImage(int num, int set) {
-    // Calculate the sheet x and y
-    int x = num % columns;
-    int y = num / columns;
-    return getTileImage(new Point(x, y), set);
+    TileSet s = getSet(set);
+    return s.getImage(s.clamp(num));
+  }
+
+  // Where in a tile the quarter 'q' starts
+  private static int getQuarterX(int q) {
+    return (q == 1 || q == 2) ? HALF_TILE : 0;
+  }
+
+  private static int getQuarterY(int q) {
+    return (q == 2 || q == 3) ? HALF_TILE : 0;
   }
 
   // Gets a quarter of a TILE_SIZE, where the second parameter 'q' tells which
   // corner to grab. 0 = top left (default if q is out of range), 1 = top right,
-  // 2 = bottom left, 3 = bottom right
+  // 2 = bottom right, 3 = bottom left
   public static BufferedImage getQuarterTileImage(Point coords, int q,
       int set) {
-    BufferedImage image;
-    int x = (int) coords.getX();
-    int y = (int) coords.getY();
-    int xOffset, yOffset;
-    switch (q) {
-    case 1:
-      xOffset = HALF_TILE;
-      yOffset = 0;
-      break;
-    case 2:
-      xOffset = HALF_TILE;
-      yOffset = HALF_TILE;
-      break;
-    case 3:
-      xOffset = 0;
-      yOffset = HALF_TILE;
-      break;
-    default:
-      xOffset = 0;
-      yOffset = 0;
-      break;
-    }
-    if (x >= 0 && x < columns && y >= 0 && y < rows) {
-      image = sets.get(set)[x][y].getImage().getSubimage(xOffset, yOffset,
-          HALF_TILE, HALF_TILE);
-    } else {
-      // If the coordinates are outside of the tile sheet, return a default tile
-      image = sets.get(set)[1][0].getImage().getSubimage(xOffset, yOffset,
-          HALF_TILE, HALF_TILE);
-      ;
-    }
-    return image;
+    TileSet s = getSet(set);
+    return s.getQuarter(s.clamp((int) coords.getX(), (int) coords.getY()), q);
   }
 
   public static BufferedImage getQuarterTileImage(int num, int q, int set) {
-    // Convert to map x, y and retrieve image
-    int x = num % columns;
-    int y = num / columns;
-    return getQuarterTileImage(new Point(x, y), q, set);
+    TileSet s = getSet(set);
+    return s.getQuarter(s.clamp(num), q);
   }
 
   // Custom getters for if a tile is from another sheet or not
@@ -149,30 +223,30 @@ public class TileManager implements Serializable {
   }
 
   public static BufferedImage getTileImage(int num) {
-    // Calculate the sheet x and y
-    int x = num % columns;
-    int y = num / columns;
-    return getTileImage(new Point(x, y), current);
+    return getTileImage(num, current);
   }
 
-  // Gets a quarter of a TILE_SIZE, where the second parameter 'q' tells which
-  // corner to grab. 0 = top left (default if q is out of range), 1 = top right,
-  // 2 = bottom left, 4 = bottom
-  // right
+  // Gets a quarter of a TILE_SIZE, from the current set
   public static BufferedImage getQuarterTileImage(Point coords, int q) {
-    return getQuarterTileImage(coords, current);
+    return getQuarterTileImage(coords, q, current);
   }
 
   public static BufferedImage getQuarterTileImage(int num, int q) {
-    // Convert to map x, y and retrieve image
-    int x = num % columns;
-    int y = num / columns;
-    return getQuarterTileImage(new Point(x, y), q, current);
+    return getQuarterTileImage(num, q, current);
+  }
+
+  // The size of a tile sheet, in tiles
+  public static int getColumns(int set) {
+    return getSet(set).columns;
+  }
+
+  public static int getRows(int set) {
+    return getSet(set).rows;
   }
 
   // Setters and getters for changing the current TileSet
   public static void setTileSet(int set) {
-    if (set >= 0 && set < sets.size()) {
+    if (set >= 0 && set < fileNames.size()) {
       current = set;
     }
   }
@@ -182,6 +256,19 @@ public class TileManager implements Serializable {
   }
 
   public static int getNumSheets() {
-    return sets.size();
+    return fileNames.size();
+  }
+
+  // Create an empty, transparent image in the same format as the screen, so
+  // drawing it can stay on the accelerated pipeline. Without a screen a plain
+  // ARGB image is returned.
+  public static BufferedImage createCompatibleImage(int width, int height) {
+    if (!GraphicsEnvironment.isHeadless()) {
+      GraphicsConfiguration gc = GraphicsEnvironment
+          .getLocalGraphicsEnvironment().getDefaultScreenDevice()
+          .getDefaultConfiguration();
+      return gc.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+    }
+    return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
   }
 }
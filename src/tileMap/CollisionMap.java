@@ -0,0 +1,12 @@
+package tileMap;
+
+// Direct tile collision queries for map objects. Coordinates are in tiles,
+// and anything outside of the map is never solid.
+public interface CollisionMap {
+
+  // Is the tile x, y solid
+  public boolean isSolid(int x, int y);
+
+  // Is any of the tiles in the rectangle x1, y1 to x2, y2 (inclusive) solid
+  public boolean isAnySolid(int x1, int y1, int x2, int y2);
+}
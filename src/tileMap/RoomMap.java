@@ -3,71 +3,68 @@ package tileMap;
 import java.awt.Point;
 import java.awt.geom.Point2D;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 
 import tileManager.TileManager;
 
-public class RoomMap implements Serializable {
-  private static final long serialVersionUID = 2;
+public class RoomMap implements Serializable, CollisionMap {
+  private static final long serialVersionUID = 3;
 
-  private class TileInfo {
+  // Tile types
+  public static final int TYPE_NORMAL = 0;
+  public static final int TYPE_SOLID = 1;
 
-    // The tile id of the graphic to show on this tile
-    private int imageId;
+  // The tiles are stored as one flat array per attribute, row by row, so the
+  // tile x, y is found at index (y * columns + x).
 
-    // Map tile type (solid, dangerous, normal (no action), teleport etc
-    private int type;
+  // The tile id of the graphic to show on this tile
+  private int[] imageIds;
 
-    // From which tile sheet set
-    private int set;
+  // Map tile type (solid, dangerous, normal (no action), teleport etc
+  private byte[] types;
 
-    public TileInfo(int imageId, int type) {
-      this.imageId = imageId;
-      this.type = type;
-      set = 0;
-    }
-
-    public int getImageId() {
-      return imageId;
-    }
-
-    public void setImageId(int imageId) {
-      this.imageId = imageId;
-    }
-
-    public int getType() {
-      return type;
-    }
-
-    public void setType(int type) {
-      this.type = type;
-    }
-
-    public int getSet() {
-      return set;
-    }
-
-    public void setSet(int set) {
-      this.set = set;
-    }
-  }
-
-  TileInfo[][] room;
+  // From which tile sheet set
+  private byte[] sets;
 
   private String name;
   private String info;
   private int columns;
   private int rows;
 
+  // Shared rooms (see AssetRegistry) are read only, copy() them to change
+  private transient boolean shared;
+
   public RoomMap(String name, int columns, int rows, String info) {
     this.name = name;
     this.columns = columns;
     this.rows = rows;
     this.info = info;
-    room = new TileInfo[columns][rows];
-    for (int x = 0; x < columns; ++x) {
-      for (int y = 0; y < rows; ++y) {
-        room[x][y] = new TileInfo(0, 0);
-      }
+    imageIds = new int[columns * rows];
+    types = new byte[columns * rows];
+    sets = new byte[columns * rows];
+  }
+
+  // A writable copy of the room
+  public RoomMap copy() {
+    RoomMap room = new RoomMap(name, columns, rows, info);
+    room.copyRegion(this, 0, 0, 0, 0, columns, rows);
+    return room;
+  }
+
+  // Make the room read only, so it can be shared
+  public void markShared() {
+    shared = true;
+  }
+
+  public boolean isShared() {
+    return shared;
+  }
+
+  private void checkWritable() {
+    if (shared) {
+      throw new UnsupportedOperationException(
+          "Room " + name + " is shared, copy it before changing it");
     }
   }
 
@@ -76,6 +73,7 @@ public class RoomMap implements Serializable {
   }
 
   public void setName(String name) {
+    checkWritable();
     this.name = name;
   }
 
@@ -84,6 +82,7 @@ public class RoomMap implements Serializable {
   }
 
   public void setInfo(String roomInfo) {
+    checkWritable();
     this.info = roomInfo;
   }
 
@@ -100,8 +99,9 @@ public class RoomMap implements Serializable {
     return rows;
   }
 
+  // Changing the size keeps the tiles that are still inside the room
   public void setRows(int rows) {
-    this.rows = rows;
+    resize(columns, rows);
   }
 
   public int getColumns() {
@@ -109,50 +109,93 @@ public class RoomMap implements Serializable {
   }
 
   public void setColumns(int columns) {
-    this.columns = columns;
+    resize(columns, rows);
+  }
+
+  private void resize(int newColumns, int newRows) {
+    checkWritable();
+    int[] newImageIds = new int[newColumns * newRows];
+    byte[] newTypes = new byte[newColumns * newRows];
+    byte[] newSets = new byte[newColumns * newRows];
+    int w = Math.min(columns, newColumns);
+    for (int y = 0; y < Math.min(rows, newRows); ++y) {
+      System.arraycopy(imageIds, y * columns, newImageIds, y * newColumns, w);
+      System.arraycopy(types, y * columns, newTypes, y * newColumns, w);
+      System.arraycopy(sets, y * columns, newSets, y * newColumns, w);
+    }
+    imageIds = newImageIds;
+    types = newTypes;
+    sets = newSets;
+    columns = newColumns;
+    rows = newRows;
+  }
+
+  // Is x, y (in tiles) inside of the room
+  public boolean contains(int x, int y) {
+    return x >= 0 && x < columns && y >= 0 && y < rows;
   }
 
   public void setTile(int tileImageId, int type, Point coords) {
-    setImageId(coords, tileImageId);
-    setType(coords, type);
+    setTile(tileImageId, type, (int) coords.getX(), (int) coords.getY());
+  }
+
+  public void setTile(int tileImageId, int type, int x, int y) {
+    setImageId(x, y, tileImageId);
+    setType(x, y, type);
   }
 
   // Return the tile sheet number of a tile on the map
   // Supports coordinates on screen( Point2d and (int, int) and col/row on
   // tile map
   public int getType(int x, int y) {
-    return getType(new Point(x, y));
+    if (contains(x, y)) {
+      return types[y * columns + x];
+    }
+    return 0;
   }
 
   public int getType(Point2D.Double coords) {
     int xt = (int) (coords.getX() / TileManager.TILE_SIZE);
     int yt = (int) (coords.getY() / TileManager.TILE_SIZE);
-    return getType(new Point(xt, yt));
+    return getType(xt, yt);
   }
 
   public int getType(Point coords) {
-    int type = 0;
-    int x = (int) coords.getX();
-    int y = (int) coords.getY();
-    if (x >= 0 && x < columns && y >= 0
-        && y < rows) {
-      type = room[(int) coords.getX()][(int) coords.getY()].getType();
-    }
-    return type;
+    return getType((int) coords.getX(), (int) coords.getY());
   }
 
   // Sets the type of a tile (Solid, transparent etc)
   // Supports setting type by (int, int) and Point)
   public void setType(int x, int y, int type) {
-    setType(new Point(x, y), type);
+    checkWritable();
+    if (contains(x, y)) {
+      types[y * columns + x] = (byte) type;
+    }
   }
 
   public void setType(Point coords, int type) {
-    int x = (int) coords.getX();
-    int y = (int) coords.getY();
-    if (x >= 0 && x <= columns && y >= 0 && y < columns) {
-      room[x][y].setType(type);
+    setType((int) coords.getX(), (int) coords.getY(), type);
+  }
+
+  public boolean isSolid(int x, int y) {
+    return contains(x, y) && types[y * columns + x] == TYPE_SOLID;
+  }
+
+  public boolean isAnySolid(int x1, int y1, int x2, int y2) {
+    // Only look at the part of the rectangle that is inside of the room
+    int fromX = Math.max(x1, 0);
+    int toX = Math.min(x2, columns - 1);
+    int fromY = Math.max(y1, 0);
+    int toY = Math.min(y2, rows - 1);
+    for (int y = fromY; y <= toY; ++y) {
+      int i = y * columns + fromX;
+      for (int x = fromX; x <= toX; ++x, ++i) {
+        if (types[i] == TYPE_SOLID) {
+          return true;
+        }
+      }
     }
+    return false;
   }
 
   // Return the tile sheet number of a tile on the map
@@ -160,48 +203,139 @@ public class RoomMap implements Serializable {
   public int getImageId(Point2D.Double coords) {
     int xt = (int) (coords.getX() / TileManager.TILE_SIZE);
     int yt = (int) (coords.getY() / TileManager.TILE_SIZE);
-    return getImageId(new Point(xt, yt));
+    return getImageId(xt, yt);
   }
 
   public int getImageId(int x, int y) {
-    return getImageId(new Point(x, y));
+    if (contains(x, y)) {
+      return imageIds[y * columns + x];
+    }
+    return 0;
   }
 
   public int getImageId(Point coords) {
-    int tile = 0;
-    if (coords.getX() >= 0 && coords.getX() < columns && coords.getY() >= 0
-        && coords.getY() < columns) {
-      tile = room[(int) coords.getX()][(int) coords.getY()].getImageId();
-    }
-    return tile;
+    return getImageId((int) coords.getX(), (int) coords.getY());
   }
 
   // Set the imageId of a tile in the map
   // Supports Point and (int, int)
   public void setImageId(int x, int y, int imageId) {
-    setImageId(new Point(x, y), imageId);
+    checkWritable();
+    if (contains(x, y)) {
+      imageIds[y * columns + x] = imageId;
+    }
   }
 
   public void setImageId(Point coords, int tileImageId) {
-    int x = (int) coords.getX();
-    int y = (int) coords.getY();
-    if (x >= 0 && x <= columns && y >= 0 && y < columns) {
-      room[x][y].setImageId(tileImageId);
-    }
+    setImageId((int) coords.getX(), (int) coords.getY(), tileImageId);
   }
-  
+
   public int getSet(Point coords) {
-    int x = (int) coords.getX();
-    int y = (int) coords.getY();
-    return room[x][y].getSet();
+    return getSet((int) coords.getX(), (int) coords.getY());
   }
 
   public int getSet(int x, int y) {
-    return getSet(new Point(x, y));
+    if (contains(x, y)) {
+      return sets[y * columns + x];
+    }
+    return 0;
   }
 
   public void setSet(int x, int y, int set) {
-    room[x][y].setSet(set);
+    checkWritable();
+    if (contains(x, y)) {
+      sets[y * columns + x] = (byte) set;
+    }
+  }
+
+  // Bulk access, copies a region of width * height tiles starting at x, y to
+  // or from an array. The array is filled row by row, the region has to be
+  // inside of the room.
+  public void getImageIds(int x, int y, int width, int height, int[] dest) {
+    for (int row = 0; row < height; ++row) {
+      System.arraycopy(imageIds, (y + row) * columns + x, dest, row * width,
+          width);
+    }
+  }
+
+  public void setImageIds(int x, int y, int width, int height, int[] src) {
+    checkWritable();
+    for (int row = 0; row < height; ++row) {
+      System.arraycopy(src, row * width, imageIds, (y + row) * columns + x,
+          width);
+    }
+  }
+
+  public void getTypes(int x, int y, int width, int height, byte[] dest) {
+    for (int row = 0; row < height; ++row) {
+      System.arraycopy(types, (y + row) * columns + x, dest, row * width,
+          width);
+    }
+  }
+
+  public void setTypes(int x, int y, int width, int height, byte[] src) {
+    checkWritable();
+    for (int row = 0; row < height; ++row) {
+      System.arraycopy(src, row * width, types, (y + row) * columns + x,
+          width);
+    }
+  }
+
+  public void getSets(int x, int y, int width, int height, byte[] dest) {
+    for (int row = 0; row < height; ++row) {
+      System.arraycopy(sets, (y + row) * columns + x, dest, row * width,
+          width);
+    }
+  }
+
+  public void setSets(int x, int y, int width, int height, byte[] src) {
+    checkWritable();
+    for (int row = 0; row < height; ++row) {
+      System.arraycopy(src, row * width, sets, (y + row) * columns + x,
+          width);
+    }
+  }
+
+  // A whole row of tiles at a time
+  public void getImageIdRow(int y, int[] dest) {
+    getImageIds(0, y, columns, 1, dest);
+  }
+
+  public void getTypeRow(int y, byte[] dest) {
+    getTypes(0, y, columns, 1, dest);
+  }
+
+  public void getSetRow(int y, byte[] dest) {
+    getSets(0, y, columns, 1, dest);
+  }
+
+  // Fill all the tiles straight from buffers, row by row, used when reading a
+  // binary room. The buffers must hold (columns * rows) values each.
+  public void loadTiles(IntBuffer imageIds, ByteBuffer types, ByteBuffer sets) {
+    checkWritable();
+    imageIds.get(this.imageIds);
+    types.get(this.types);
+    sets.get(this.sets);
+  }
+
+  public void storeTiles(IntBuffer imageIds, ByteBuffer types, ByteBuffer sets) {
+    imageIds.put(this.imageIds);
+    types.put(this.types);
+    sets.put(this.sets);
+  }
+
+  // Copy all the attributes of a region of tiles from another room map.
+  // sx, sy is the region in the source and dx, dy where it goes in this map.
+  public void copyRegion(RoomMap source, int sx, int sy, int dx, int dy,
+      int width, int height) {
+    checkWritable();
+    for (int row = 0; row < height; ++row) {
+      int from = (sy + row) * source.columns + sx;
+      int to = (dy + row) * columns + dx;
+      System.arraycopy(source.imageIds, from, imageIds, to, width);
+      System.arraycopy(source.types, from, types, to, width);
+      System.arraycopy(source.sets, from, sets, to, width);
+    }
   }
 
 }
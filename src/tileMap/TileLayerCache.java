@@ -0,0 +1,113 @@
+package tileMap;
+
+import java.awt.AlphaComposite;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import tileManager.TileManager;
+
+// Keeps a room map rasterized into a grid of images (chunks), so a whole
+// layer can be drawn with a handful of drawImage calls instead of one call per
+// tile. When a tile in the map changes, only the chunk holding it is redrawn.
+public class TileLayerCache {
+  // Width and height of a chunk (in tiles)
+  public static final int CHUNK_SIZE = 8;
+
+  private RoomMap room;
+
+  private int chunkColumns;
+  private int chunkRows;
+  private BufferedImage[][] chunks;
+  private boolean[][] dirty;
+
+  public TileLayerCache(RoomMap room) {
+    this.room = room;
+    chunkColumns = (room.getColumns() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    chunkRows = (room.getRows() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    chunks = new BufferedImage[chunkColumns][chunkRows];
+    dirty = new boolean[chunkColumns][chunkRows];
+    invalidateAll();
+  }
+
+  public RoomMap getRoom() {
+    return room;
+  }
+
+  // Width and height of the whole layer (in pixels)
+  public int getWidth() {
+    return room.getColumns() * TileManager.TILE_SIZE;
+  }
+
+  public int getHeight() {
+    return room.getRows() * TileManager.TILE_SIZE;
+  }
+
+  // Mark the chunk holding the tile x, y (in tiles) to be redrawn
+  public void invalidate(int x, int y) {
+    if (x >= 0 && x < room.getColumns() && y >= 0 && y < room.getRows()) {
+      dirty[x / CHUNK_SIZE][y / CHUNK_SIZE] = true;
+    }
+  }
+
+  public void invalidateAll() {
+    for (int cx = 0; cx < chunkColumns; ++cx) {
+      for (int cy = 0; cy < chunkRows; ++cy) {
+        dirty[cx][cy] = true;
+      }
+    }
+  }
+
+  // Draw the layer with its top left corner at x, y (in pixels)
+  public void render(Graphics2D g2d, int x, int y) {
+    int chunkPx = CHUNK_SIZE * TileManager.TILE_SIZE;
+    for (int cx = 0; cx < chunkColumns; ++cx) {
+      for (int cy = 0; cy < chunkRows; ++cy) {
+        g2d.drawImage(getChunk(cx, cy), x + cx * chunkPx, y + cy * chunkPx,
+            null);
+      }
+    }
+  }
+
+  private BufferedImage getChunk(int cx, int cy) {
+    if (dirty[cx][cy]) {
+      rasterize(cx, cy);
+      dirty[cx][cy] = false;
+    }
+    return chunks[cx][cy];
+  }
+
+  // Draw all the tiles of a chunk onto its image
+  private void rasterize(int cx, int cy) {
+    int ts = TileManager.TILE_SIZE;
+    int firstX = cx * CHUNK_SIZE;
+    int firstY = cy * CHUNK_SIZE;
+    int columns = Math.min(CHUNK_SIZE, room.getColumns() - firstX);
+    int rows = Math.min(CHUNK_SIZE, room.getRows() - firstY);
+
+    if (chunks[cx][cy] == null) {
+      chunks[cx][cy] = TileManager.createCompatibleImage(columns * ts,
+          rows * ts);
+    }
+    Graphics2D g2d = chunks[cx][cy].createGraphics();
+
+    // Clear whatever was there before, the chunk is transparent where there
+    // are no tiles
+    Composite composite = g2d.getComposite();
+    g2d.setComposite(AlphaComposite.Clear);
+    g2d.fillRect(0, 0, columns * ts, rows * ts);
+    g2d.setComposite(composite);
+
+    for (int x = 0; x < columns; ++x) {
+      for (int y = 0; y < rows; ++y) {
+        // If the tile image is not id 0 (transparent) then draw the image
+        int id = room.getImageId(firstX + x, firstY + y);
+        if (id != 0) {
+          int set = room.getSet(firstX + x, firstY + y);
+          TileManager.drawTile(g2d, id, set, x * ts, y * ts);
+        }
+      }
+    }
+    g2d.dispose();
+  }
+}